@@ -1,14 +1,31 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
 
 public class AddressBooking {
 
     private static final Path DATA_FILE = Paths.get("contacts.csv");
-    private final List<Contact> contacts = new ArrayList<>();
+    private static final Path PAGE_FILE = Paths.get("contacts.db");
+    private static final int SEARCH_LIMIT = Integer.getInteger("addressbook.searchLimit", 50);
+    private static final long IMPORT_CHUNK = 8L << 20;
+    private static final int EXPORT_BUFFER = 1 << 20;
+    private static final String[] COLUMNS = { "id", "name", "phone", "email", "address" };
+    private final ContactBook contacts = new ContactBook();
     private final Scanner scanner = new Scanner(System.in);
+    private final ContactStore store;
+    private final AtomicLong nextId = new AtomicLong(System.currentTimeMillis() * 1000);
 
     private static class Contact {
         String id;
@@ -16,6 +33,9 @@ public class AddressBooking {
         String phone;
         String email;
         String address;
+        int slot = -1; // head slot in the page file, -1 when not stored there
+        int doc = -1;  // document number in the search index
+        PagedStore pages; // set while the four fields live only in the page file
 
         Contact(String id, String name, String phone, String email, String address) {
             this.id = id;
@@ -24,10 +44,36 @@ public class AddressBooking {
             this.email = email;
             this.address = address;
         }
+
+        String name() { return fields().name; }
+        String phone() { return fields().phone; }
+        String email() { return fields().email; }
+        String address() { return fields().address; }
+
+        /** This contact, or a copy read back from the page file if it has been paged out. */
+        Contact fields() { return pages == null ? this : pages.read(this); }
+
+        /** Reads the fields back from the page file so they can be changed in place. */
+        void fetch() {
+            if (pages == null) return;
+            Contact f = pages.read(this);
+            name = f.name;
+            phone = f.phone;
+            email = f.email;
+            address = f.address;
+            pages = null;
+        }
+
+        /** Drops the fields, leaving {@code store} to read them back on demand. */
+        void pageOut(PagedStore store) {
+            name = phone = email = address = null;
+            pages = store;
+        }
     }
 
-    public AddressBooking() {
-        loadFromFile();
+    public AddressBooking(ContactStore store) {
+        this.store = store;
+        loadFromStore();
         mainLoop();
     }
 
@@ -41,6 +87,7 @@ public class AddressBooking {
             System.out.println("5. Search contacts");
             System.out.println("6. Import CSV");
             System.out.println("7. Export CSV");
+            System.out.println("8. Find by phone/email");
             System.out.println("0. Exit");
             System.out.print("Choose option: ");
             String choice = scanner.nextLine().trim();
@@ -52,7 +99,8 @@ public class AddressBooking {
                 case "5": searchContacts(); break;
                 case "6": importCsv(); break;
                 case "7": exportCsv(); break;
-                case "0": System.out.println("Exiting..."); return;
+                case "8": findByPhoneOrEmail(); break;
+                case "0": closeStore(); System.out.println("Exiting..."); return;
                 default: System.out.println("Invalid choice.");
             }
         }
@@ -69,7 +117,7 @@ public class AddressBooking {
         }
         System.out.println("\nID\tName\tPhone\tEmail\tAddress");
         for (Contact c : contacts) {
-            System.out.printf("%s\t%s\t%s\t%s\t%s%n", c.id, c.name, c.phone, c.email, c.address);
+            System.out.printf("%s\t%s\t%s\t%s\t%s%n", c.id, c.name(), c.phone(), c.email(), c.address());
         }
     }
 
@@ -85,8 +133,9 @@ public class AddressBooking {
         }
 
         String id = generateId();
-        contacts.add(new Contact(id, name, phone, email, address));
-        saveToFile();
+        Contact c = new Contact(id, name, phone, email, address);
+        contacts.add(c);
+        persist(() -> store.insert(c));
         System.out.println("Contact added.");
     }
 
@@ -96,17 +145,19 @@ public class AddressBooking {
         Contact c = findById(id);
         if (c == null) { System.out.println("Contact not found."); return; }
 
-        System.out.print("New Name (" + c.name + "): "); String name = scanner.nextLine().trim();
-        System.out.print("New Phone (" + c.phone + "): "); String phone = scanner.nextLine().trim();
-        System.out.print("New Email (" + c.email + "): "); String email = scanner.nextLine().trim();
-        System.out.print("New Address (" + c.address + "): "); String address = scanner.nextLine().trim();
+        System.out.print("New Name (" + c.name() + "): "); String name = scanner.nextLine().trim();
+        System.out.print("New Phone (" + c.phone() + "): "); String phone = scanner.nextLine().trim();
+        System.out.print("New Email (" + c.email() + "): "); String email = scanner.nextLine().trim();
+        System.out.print("New Address (" + c.address() + "): "); String address = scanner.nextLine().trim();
 
-        if (!name.isEmpty()) c.name = name;
-        if (!phone.isEmpty()) c.phone = phone;
-        if (!email.isEmpty()) c.email = email;
-        if (!address.isEmpty()) c.address = address;
+        contacts.edit(c, e -> {
+            if (!name.isEmpty()) e.name = name;
+            if (!phone.isEmpty()) e.phone = phone;
+            if (!email.isEmpty()) e.email = email;
+            if (!address.isEmpty()) e.address = address;
+        });
 
-        saveToFile();
+        persist(() -> store.update(c));
         System.out.println("Contact updated.");
     }
 
@@ -116,24 +167,36 @@ public class AddressBooking {
         Contact c = findById(id);
         if (c == null) { System.out.println("Contact not found."); return; }
 
-        System.out.print("Are you sure you want to delete " + c.name + "? (y/n): ");
+        System.out.print("Are you sure you want to delete " + c.name() + "? (y/n): ");
         String ans = scanner.nextLine().trim().toLowerCase();
         if (ans.equals("y")) {
             contacts.remove(c);
-            saveToFile();
+            persist(() -> store.delete(c));
             System.out.println("Contact deleted.");
         }
     }
 
     private void searchContacts() {
         System.out.print("Enter search query: ");
-        String q = scanner.nextLine().trim().toLowerCase();
-        List<Contact> result = contacts.stream()
-                .filter(c -> (c.name != null && c.name.toLowerCase().contains(q)) ||
-                             (c.phone != null && c.phone.toLowerCase().contains(q)) ||
-                             (c.email != null && c.email.toLowerCase().contains(q)) ||
-                             (c.address != null && c.address.toLowerCase().contains(q)))
-                .collect(Collectors.toList());
+        String q = scanner.nextLine().trim();
+        List<Contact> result = contacts.search(q, SEARCH_LIMIT);
+
+        if (result.isEmpty()) {
+            System.out.println("No contacts found.");
+            return;
+        }
+
+        System.out.println("\nID\tName\tPhone\tEmail\tAddress");
+        for (Contact c : result) {
+            System.out.printf("%s\t%s\t%s\t%s\t%s%n", c.id, c.name(), c.phone(), c.email(), c.address());
+        }
+        if (result.size() == SEARCH_LIMIT) System.out.println("(showing the best " + SEARCH_LIMIT + " matches)");
+    }
+
+    private void findByPhoneOrEmail() {
+        System.out.print("Enter phone or email: ");
+        String key = scanner.nextLine().trim();
+        List<Contact> result = key.contains("@") ? contacts.withEmail(key) : contacts.withPhone(key);
 
         if (result.isEmpty()) {
             System.out.println("No contacts found.");
@@ -142,7 +205,7 @@ public class AddressBooking {
 
         System.out.println("\nID\tName\tPhone\tEmail\tAddress");
         for (Contact c : result) {
-            System.out.printf("%s\t%s\t%s\t%s\t%s%n", c.id, c.name, c.phone, c.email, c.address);
+            System.out.printf("%s\t%s\t%s\t%s\t%s%n", c.id, c.name(), c.phone(), c.email(), c.address());
         }
     }
 
@@ -150,149 +213,1211 @@ public class AddressBooking {
     // FILE OPERATIONS
     // ========================
 
-    private void saveToFile() {
+    private void persist(StoreAction action) {
         try {
-            List<String> lines = new ArrayList<>();
-            lines.add("id,name,phone,email,address");
-            for (Contact c : contacts) {
-                lines.add(csvEscape(c.id) + "," + csvEscape(c.name) + "," +
-                        csvEscape(c.phone) + "," + csvEscape(c.email) + "," + csvEscape(c.address));
-            }
-            Files.write(DATA_FILE, lines, StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            action.run();
         } catch (Exception e) {
             System.out.println("Failed to save: " + e.getMessage());
         }
     }
 
-    private void loadFromFile() {
+    private static void writeContacts(Path file, Iterable<Contact> contacts) throws IOException {
+        try (Csv.Writer w = Csv.Writer.create(file)) {
+            w.record("id", "name", "phone", "email", "address");
+            for (Contact c : contacts) {
+                w.record(c.id, c.name(), c.phone(), c.email(), c.address());
+            }
+        }
+    }
+
+    private void loadFromStore() {
         contacts.clear();
-        if (!Files.exists(DATA_FILE)) return;
         try {
-            List<String> lines = Files.readAllLines(DATA_FILE, StandardCharsets.UTF_8);
-            boolean first = true;
-            for (String ln : lines) {
-                if (first && ln.toLowerCase().startsWith("id,")) { first = false; continue; }
-                first = false;
-                String[] parts = csvSplit(ln, 5);
-                if (parts.length < 5) continue;
-                contacts.add(new Contact(parts[0], parts[1], parts[2], parts[3], parts[4]));
-            }
+            store.load(contacts);
         } catch (Exception e) {
             System.out.println("Failed to load contacts: " + e.getMessage());
         }
     }
 
+    private void closeStore() {
+        try {
+            store.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Splits the file into byte ranges that end on record boundaries, parses
+     * them in parallel, then merges in file order on this thread, skipping
+     * rows whose normalized phone or email is already in the book (or earlier
+     * in the file), and saves everything in one batch. Only a few ranges are
+     * in flight at once and each is merged as soon as it is parsed, so the
+     * parsed rows of the whole file are never held together.
+     */
     private void importCsv() {
         System.out.print("Enter CSV file path to import: ");
         String path = scanner.nextLine().trim();
         File f = new File(path);
         if (!f.exists()) { System.out.println("File not found."); return; }
 
-        try {
-            List<String> lines = Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
-            boolean first = true;
-            int added = 0;
-
-            for (String ln : lines) {
-                if (first && ln.toLowerCase().startsWith("id,")) { first = false; continue; }
-                first = false;
-
-                String[] parts = csvSplit(ln, 5);
-                if (parts.length < 5) continue;
+        long start = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            long target = Math.max(IMPORT_CHUNK, ch.size() / (4L * parallelism));
+            Iterator<long[]> ranges = recordRanges(ch, target).iterator();
+            ArrayDeque<CompletableFuture<List<String[]>>> parsing = new ArrayDeque<>();
 
-                String id = parts[0].isEmpty() ? generateId() : parts[0];
-                while (idExists(id)) id = generateId();
-
-                contacts.add(new Contact(id, parts[1], parts[2], parts[3], parts[4]));
-                added++;
+            List<Contact> added = new ArrayList<>();
+            int rows = 0, duplicates = 0;
+            while (ranges.hasNext() || !parsing.isEmpty()) {
+                while (ranges.hasNext() && parsing.size() <= parallelism) {
+                    long[] range = ranges.next();
+                    parsing.add(CompletableFuture.supplyAsync(() -> parseRange(ch, range[0], range[1])));
+                }
+                List<String[]> chunk;
+                try {
+                    chunk = parsing.remove().join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof UncheckedIOException u ? u.getCause() : e;
+                }
+                for (String[] row : chunk) {
+                    rows++;
+                    if (!contacts.withPhone(row[2]).isEmpty() || !contacts.withEmail(row[3]).isEmpty()) {
+                        duplicates++;
+                        continue;
+                    }
+                    String id = row[0].isEmpty() || idExists(row[0]) ? generateId() : row[0];
+                    Contact c = new Contact(id, row[1], row[2], row[3], row[4]);
+                    contacts.add(c);
+                    added.add(c);
+                }
             }
 
-            if (added > 0) {
-                saveToFile();
-                System.out.println("Imported " + added + " contacts.");
-            } else {
+            if (!added.isEmpty()) persist(() -> store.insertAll(added));
+            double secs = (System.nanoTime() - start) / 1e9;
+            if (rows == 0) {
                 System.out.println("No contacts found in file.");
+            } else {
+                System.out.printf("Imported %d contacts, skipped %d duplicates (%d rows in %.2f s, %.0f rows/sec).%n",
+                        added.size(), duplicates, rows, secs, rows / secs);
             }
         } catch (Exception e) {
             System.out.println("Import failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Cuts the file into ranges of at least {@code target} bytes, each ending
+     * just after a newline that is outside quotes. Quote parity has to be
+     * tracked from the start of the file, but that is a plain byte scan.
+     */
+    static List<long[]> recordRanges(FileChannel ch, long target) throws IOException {
+        long size = ch.size();
+        List<long[]> ranges = new ArrayList<>();
+        long start = 0, cut = target;
+        boolean quoted = false;
+        for (long pos = 0; pos < size; ) {
+            MappedByteBuffer window = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(Csv.Reader.DEFAULT_WINDOW, size - pos));
+            for (int i = 0, n = window.limit(); i < n; i++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted && pos + i >= cut) {
+                    ranges.add(new long[] { start, pos + i + 1 });
+                    start = pos + i + 1;
+                    cut = start + target;
+                }
+            }
+            pos += window.limit();
+        }
+        if (start < size) ranges.add(new long[] { start, size });
+        return ranges;
+    }
+
+    /** Rows of one range as {id, name, phone, email, address}; the header row is dropped. */
+    private static List<String[]> parseRange(FileChannel ch, long from, long to) {
+        List<String[]> rows = new ArrayList<>();
+        try {
+            Csv.Reader r = Csv.Reader.of(ch.map(FileChannel.MapMode.READ_ONLY, from, to - from));
+            while (r.next()) {
+                if (from == 0 && r.recordNumber() == 1 && r.fieldEqualsIgnoreCase(0, "id")) continue;
+                if (r.isBlank()) continue;
+                rows.add(new String[] { r.string(0), r.string(1), r.string(2), r.string(3), r.string(4) });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
     private void exportCsv() {
-        System.out.print("Enter CSV file path to export: ");
+        System.out.print("Enter CSV file path to export (.gz to compress): ");
         String path = scanner.nextLine().trim();
+        System.out.print("Columns, comma-separated (Enter for all): ");
+        String columns = scanner.nextLine().trim();
+        System.out.print("Only contacts matching (Enter for all): ");
+        String filter = scanner.nextLine().trim();
         File f = new File(path);
 
         try {
-            List<String> lines = new ArrayList<>();
-            lines.add("id,name,phone,email,address");
-            for (Contact c : contacts) {
-                lines.add(csvEscape(c.id) + "," + csvEscape(c.name) + "," +
-                        csvEscape(c.phone) + "," + csvEscape(c.email) + "," + csvEscape(c.address));
-            }
-            Files.write(f.toPath(), lines, StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            System.out.println("Exported to " + f.getAbsolutePath());
+            long n = exportContacts(f.toPath(), parseColumns(columns), filter);
+            System.out.println("Exported " + n + " contacts to " + f.getAbsolutePath());
         } catch (Exception e) {
             System.out.println("Export failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Streams the selected columns of every contact matching {@code filter}
+     * straight from the book through one large direct buffer, gzipped when the
+     * file name ends in ".gz". Memory use does not grow with the book.
+     */
+    private long exportContacts(Path file, int[] columns, String filter) throws IOException {
+        WritableByteChannel out = file.getFileName().toString().endsWith(".gz")
+                ? Channels.newChannel(new GZIPOutputStream(Files.newOutputStream(file), EXPORT_BUFFER))
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        long n = 0;
+        try (Csv.Writer w = new Csv.Writer(out, EXPORT_BUFFER)) {
+            for (int col : columns) w.field(COLUMNS[col]);
+            w.endRecord();
+            for (Contact c : contacts.matching(filter)) {
+                for (int col : columns) w.field(column(c, col));
+                w.endRecord();
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static int[] parseColumns(String spec) {
+        if (spec.isEmpty()) return new int[] { 0, 1, 2, 3, 4 };
+        String[] names = spec.split(",");
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int col = Arrays.asList(COLUMNS).indexOf(names[i].trim().toLowerCase(Locale.ROOT));
+            if (col < 0) throw new IllegalArgumentException("Unknown column '" + names[i].trim() + "'");
+            columns[i] = col;
+        }
+        return columns;
+    }
+
+    private static String column(Contact c, int col) {
+        switch (col) {
+            case 0: return c.id;
+            case 1: return c.name();
+            case 2: return c.phone();
+            case 3: return c.email();
+            default: return c.address();
+        }
+    }
+
     // ========================
     // UTILITIES
     // ========================
 
     private Contact findById(String id) {
-        for (Contact c : contacts) if (c.id.equals(id)) return c;
-        return null;
+        return contacts.get(id);
     }
 
     private boolean idExists(String id) {
-        for (Contact c : contacts) if (c.id.equals(id)) return true;
-        return false;
+        return contacts.containsId(id);
+    }
+
+    static String normalizePhone(String phone) {
+        if (phone == null) return "";
+        StringBuilder sb = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char ch = phone.charAt(i);
+            if (ch >= '0' && ch <= '9') sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    static String normalizeEmail(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The in-memory book: contacts in insertion order, hashed by id, with
+     * secondary indexes on normalized phone (digits only) and email (trimmed,
+     * lower case). All changes go through {@link #add}, {@link #remove} and
+     * {@link #edit}, so the indexes always describe the current field values.
+     */
+    static final class ContactBook extends AbstractCollection<Contact> {
+        private final Map<String, Contact> byId = new LinkedHashMap<>();
+        private final Map<String, List<Contact>> byPhone = new HashMap<>();
+        private final Map<String, List<Contact>> byEmail = new HashMap<>();
+        private final TrigramIndex text = new TrigramIndex();
+
+        @Override public int size() { return byId.size(); }
+
+        /** Returns false, leaving the book unchanged, if the id is already taken. */
+        @Override public boolean add(Contact c) {
+            if (byId.putIfAbsent(c.id, c) != null) return false;
+            index(c);
+            return true;
+        }
+
+        @Override public boolean remove(Object o) {
+            if (!(o instanceof Contact)) return false;
+            Contact c = (Contact) o;
+            if (byId.get(c.id) != c) return false;
+            byId.remove(c.id);
+            unindex(c);
+            return true;
+        }
+
+        @Override public void clear() {
+            byId.clear();
+            byPhone.clear();
+            byEmail.clear();
+            text.clear();
+        }
+
+        @Override public Iterator<Contact> iterator() {
+            Iterator<Contact> it = byId.values().iterator();
+            return new Iterator<Contact>() {
+                private Contact last;
+                @Override public boolean hasNext() { return it.hasNext(); }
+                @Override public Contact next() { return last = it.next(); }
+                @Override public void remove() { it.remove(); unindex(last); }
+            };
+        }
+
+        Contact get(String id) { return byId.get(id); }
+
+        boolean containsId(String id) { return byId.containsKey(id); }
+
+        List<Contact> withPhone(String phone) { return lookup(byPhone, normalizePhone(phone)); }
+
+        List<Contact> withEmail(String email) { return lookup(byEmail, normalizeEmail(email)); }
+
+        /** Best {@code limit} contacts containing {@code query} in any field, case-insensitively. */
+        List<Contact> search(String query, int limit) { return text.search(query, limit); }
+
+        /** Every contact containing {@code query}, found lazily; the whole book for an empty query. */
+        Iterable<Contact> matching(String query) {
+            return query.isEmpty() ? this : () -> text.matches(query);
+        }
+
+        /** Applies {@code change} to a contact in the book; the id must not change. */
+        void edit(Contact c, Consumer<Contact> change) {
+            unindex(c);
+            c.fetch();
+            change.accept(c);
+            index(c);
+        }
+
+        private void index(Contact c) {
+            put(byPhone, normalizePhone(c.phone()), c);
+            put(byEmail, normalizeEmail(c.email()), c);
+            text.add(c);
+        }
+
+        private void unindex(Contact c) {
+            take(byPhone, normalizePhone(c.phone()), c);
+            take(byEmail, normalizeEmail(c.email()), c);
+            text.remove(c);
+        }
+
+        private static List<Contact> lookup(Map<String, List<Contact>> index, String key) {
+            if (key.isEmpty()) return Collections.emptyList();
+            return Collections.unmodifiableList(index.getOrDefault(key, Collections.emptyList()));
+        }
+
+        private static void put(Map<String, List<Contact>> index, String key, Contact c) {
+            if (key.isEmpty()) return;
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(c);
+        }
+
+        private static void take(Map<String, List<Contact>> index, String key, Contact c) {
+            List<Contact> list = index.get(key);
+            if (list == null) return;
+            list.remove(c);
+            if (list.isEmpty()) index.remove(key);
+        }
     }
 
+    /**
+     * "C" plus a counter seeded from the clock in microseconds, skipping ids
+     * already in the book. Unlike millis-plus-random it cannot collide, and
+     * the seed keeps new ids ahead of earlier runs.
+     */
     private String generateId() {
-        return "C" + System.currentTimeMillis() + (int)(Math.random() * 1000);
-    }
-
-    private static String csvEscape(String s) {
-        if (s == null) return "";
-        String t = s.replace("\"", "\"\"");
-        if (t.contains(",") || t.contains("\"") || t.contains("\n") || t.contains("\r")) {
-            return "\"" + t + "\"";
-        }
-        return t;
-    }
-
-    private static String[] csvSplit(String line, int expectedColumns) {
-        List<String> parts = new ArrayList<>(expectedColumns);
-        if (line == null || line.isEmpty()) {
-            for (int i = 0; i < expectedColumns; i++) parts.add("");
-            return parts.toArray(new String[0]);
-        }
-        int len = line.length();
-        StringBuilder cur = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i = 0; i < len; i++) {
-            char ch = line.charAt(i);
-            if (ch == '"') {
-                if (inQuotes && i + 1 < len && line.charAt(i + 1) == '"') {
-                    cur.append('"');
-                    i++;
-                } else inQuotes = !inQuotes;
-            } else if (ch == ',' && !inQuotes) {
-                parts.add(cur.toString());
-                cur.setLength(0);
-            } else cur.append(ch);
-        }
-        parts.add(cur.toString());
-        while (parts.size() < expectedColumns) parts.add("");
-        return parts.toArray(new String[0]);
-    }
-
-    public static void main(String[] args) {
-        new AddressBooking();
+        String id;
+        do {
+            id = "C" + nextId.getAndIncrement();
+        } while (contacts.containsId(id));
+        return id;
+    }
+
+    /**
+     * Case-folded trigram index over name, phone, email and address. A query
+     * of three or more characters intersects the posting lists of its
+     * trigrams, so only contacts holding all of them are checked and scored;
+     * shorter queries fall back to a scan. An edited contact is re-added under
+     * a fresh document number, which keeps every posting list sorted by plain
+     * appends; the old number stays behind as a tombstone until enough pile up
+     * to make a rebuild worthwhile.
+     */
+    static final class TrigramIndex {
+        private final Map<Long, Postings> postings = new HashMap<>();
+        private Contact[] docs = new Contact[1024];
+        private int next, live;
+
+        private static final class Postings {
+            int[] ids = new int[4];
+            int size;
+
+            void add(int doc) {
+                if (size > 0 && ids[size - 1] == doc) return;
+                if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+                ids[size++] = doc;
+            }
+        }
+
+        private static final class Hit {
+            final Contact contact;
+            final int score;
+            Hit(Contact contact, int score) { this.contact = contact; this.score = score; }
+        }
+
+        // lowest score first, later document first among equals: the head is the hit to drop
+        private static final Comparator<Hit> WORST_FIRST =
+                Comparator.<Hit>comparingInt(h -> h.score).thenComparingInt(h -> -h.contact.doc);
+
+        void add(Contact c) {
+            if (next == docs.length) docs = Arrays.copyOf(docs, next * 2);
+            int doc = next++;
+            docs[doc] = c;
+            c.doc = doc;
+            live++;
+            Contact f = c.fields();
+            addField(doc, f.name);
+            addField(doc, f.phone);
+            addField(doc, f.email);
+            addField(doc, f.address);
+        }
+
+        void remove(Contact c) {
+            if (c.doc < 0 || docs[c.doc] != c) return;
+            docs[c.doc] = null;
+            c.doc = -1;
+            live--;
+            int dead = next - live;
+            if (dead > 4096 && dead > live) rebuild();
+        }
+
+        void clear() {
+            postings.clear();
+            Arrays.fill(docs, 0, next, null);
+            next = live = 0;
+        }
+
+        List<Contact> search(String query, int limit) {
+            String q = fold(query);
+            PriorityQueue<Hit> top = new PriorityQueue<>(Math.min(limit, 1024) + 1, WORST_FIRST);
+            if (q.length() < 3) {
+                for (int d = 0; d < next; d++) consider(docs[d], q, top, limit);
+            } else {
+                int[] candidates = candidates(q);
+                for (int d : candidates) {
+                    if (d < 0) break;
+                    consider(docs[d], q, top, limit);
+                }
+            }
+            List<Contact> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) result.add(top.poll().contact);
+            Collections.reverse(result);
+            return result;
+        }
+
+        /** Contacts containing {@code query}, in document order, produced one at a time. */
+        Iterator<Contact> matches(String query) {
+            String q = fold(query);
+            int[] candidates = q.length() < 3 ? null : candidates(q);
+            int end = candidates == null ? next : candidates.length;
+            return new Iterator<Contact>() {
+                private int i;
+                private Contact ahead = advance();
+
+                private Contact advance() {
+                    while (i < end) {
+                        int d = candidates == null ? i++ : candidates[i++];
+                        if (d < 0) { i = end; break; }
+                        Contact c = docs[d];
+                        if (c != null && score(c, q) > 0) return c;
+                    }
+                    return null;
+                }
+
+                @Override public boolean hasNext() { return ahead != null; }
+
+                @Override public Contact next() {
+                    if (ahead == null) throw new NoSuchElementException();
+                    Contact c = ahead;
+                    ahead = advance();
+                    return c;
+                }
+            };
+        }
+
+        private static void consider(Contact c, String q, PriorityQueue<Hit> top, int limit) {
+            if (c == null) return;
+            int score = score(c, q);
+            if (score == 0) return;
+            top.add(new Hit(c, score));
+            if (top.size() > limit) top.poll();
+        }
+
+        /** Documents holding every trigram of {@code q}, ascending, terminated by -1 if short. */
+        private int[] candidates(String q) {
+            Postings[] lists = new Postings[q.length() - 2];
+            for (int i = 0; i < lists.length; i++) {
+                Postings p = postings.get(key(q, i));
+                if (p == null) return new int[0];
+                lists[i] = p;
+            }
+            Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+            int[] out = Arrays.copyOf(lists[0].ids, lists[0].size);
+            int n = out.length;
+            for (int k = 1; k < lists.length && n > 0; k++) {
+                int[] ids = lists[k].ids;
+                int size = lists[k].size, i = 0, j = 0, m = 0;
+                while (i < n && j < size) {
+                    if (out[i] < ids[j]) i++;
+                    else if (out[i] > ids[j]) j++;
+                    else { out[m++] = out[i++]; j++; }
+                }
+                n = m;
+            }
+            if (n < out.length) out[n] = -1;
+            return out;
+        }
+
+        /**
+         * Weighted by field (name 4, phone and email 3, address 1), doubled
+         * for a match at the start of the field and again for the whole field.
+         */
+        private static int score(Contact c, String q) {
+            if (q.isEmpty()) return 1;
+            Contact f = c.fields();
+            return fieldScore(f.name, q, 4) + fieldScore(f.phone, q, 3)
+                 + fieldScore(f.email, q, 3) + fieldScore(f.address, q, 1);
+        }
+
+        private static int fieldScore(String field, String q, int weight) {
+            if (field == null) return 0;
+            int at = indexOfFolded(field, q);
+            if (at < 0) return 0;
+            int score = weight;
+            if (at == 0) score *= 2;
+            if (field.length() == q.length()) score *= 2;
+            return score;
+        }
+
+        private static int indexOfFolded(String field, String q) {
+            outer:
+            for (int i = 0, last = field.length() - q.length(); i <= last; i++) {
+                for (int j = 0; j < q.length(); j++) {
+                    if (Character.toLowerCase(field.charAt(i + j)) != q.charAt(j)) continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        private void addField(int doc, String s) {
+            if (s == null) return;
+            for (int i = 0; i + 3 <= s.length(); i++) {
+                postings.computeIfAbsent(key(s, i), k -> new Postings()).add(doc);
+            }
+        }
+
+        private void rebuild() {
+            List<Contact> alive = new ArrayList<>(live);
+            for (int d = 0; d < next; d++) if (docs[d] != null) alive.add(docs[d]);
+            clear();
+            for (Contact c : alive) add(c);
+        }
+
+        /**
+         * The three folded chars packed into 48 bits, then multiplied by an odd
+         * constant: still one-to-one, but Long.hashCode's high/low xor no longer
+         * folds the first char onto the last and piles ASCII keys into a few buckets.
+         */
+        private static long key(String s, int i) {
+            long packed = (long) Character.toLowerCase(s.charAt(i)) << 32
+                        | (long) Character.toLowerCase(s.charAt(i + 1)) << 16
+                        | Character.toLowerCase(s.charAt(i + 2));
+            return packed * 0x9E3779B97F4A7C15L;
+        }
+
+        private static String fold(String s) {
+            char[] out = new char[s.length()];
+            for (int i = 0; i < out.length; i++) out[i] = Character.toLowerCase(s.charAt(i));
+            return new String(out);
+        }
+    }
+
+    // ========================
+    // STORAGE ENGINES
+    // ========================
+
+    private interface StoreAction { void run() throws IOException; }
+
+    /**
+     * Persistence behind the in-memory book. The book calls exactly one of these
+     * after each change has been applied to {@code contacts}.
+     */
+    interface ContactStore extends Closeable {
+        void load(Collection<Contact> book) throws IOException;
+        void insert(Contact c) throws IOException;
+        void update(Contact c) throws IOException;
+        void delete(Contact c) throws IOException;
+        void insertAll(Collection<Contact> batch) throws IOException;
+    }
+
+    /** The original format: {@code contacts.csv}, rewritten in full on every change. */
+    private static final class CsvStore implements ContactStore {
+        private final Path file;
+        private Collection<Contact> book = Collections.emptyList();
+
+        CsvStore(Path file) { this.file = file; }
+
+        /** Later writes rewrite {@code book} - the live list the contacts were loaded into. */
+        @Override public void load(Collection<Contact> book) throws IOException {
+            this.book = book;
+            if (Files.exists(file)) {
+                try (Csv.Reader r = Csv.Reader.open(file)) {
+                    while (r.next()) {
+                        if (r.recordNumber() == 1 && r.fieldEqualsIgnoreCase(0, "id")) continue;
+                        if (r.isBlank()) continue;
+                        book.add(new Contact(r.string(0), r.string(1), r.string(2), r.string(3), r.string(4)));
+                    }
+                }
+            }
+        }
+
+        @Override public void insert(Contact c) throws IOException { writeContacts(file, book); }
+        @Override public void update(Contact c) throws IOException { writeContacts(file, book); }
+        @Override public void delete(Contact c) throws IOException { writeContacts(file, book); }
+        @Override public void insertAll(Collection<Contact> batch) throws IOException { writeContacts(file, book); }
+        @Override public void close() {}
+    }
+
+    /**
+     * Fixed-page record file, memory-mapped a segment at a time through a
+     * bounded LRU. Page 0 is the header; after it every 4 KB page holds eight
+     * 512-byte slots. A contact takes one slot (longer ones chain into more),
+     * deleted slots go on a free list for reuse, and an edit rewrites only the
+     * slots the contact already owns - one page write in the usual case.
+     * Only ids and the book's indexes stay in memory: once stored, a contact
+     * is paged out and its fields are decoded again on demand, through a
+     * bounded LRU of recently read records.
+     * A chain is written tail first so its head slot is the commit point; the
+     * slot count and free list in the header are only hints, rebuilt from the
+     * slots themselves on open, so they never need a forced write of their own.
+     */
+    static final class PagedStore implements ContactStore {
+        private static final int MAGIC = 0x41425047; // "ABPG"
+        private static final int VERSION = 1;
+        private static final int PAGE = 4096, SLOT = 512;
+        private static final int PAGES_PER_SEGMENT = 64;
+        private static final long SEGMENT = (long) PAGE * PAGES_PER_SEGMENT;
+        private static final int MAX_SEGMENTS = Integer.getInteger("addressbook.pageCacheSegments", 256);
+        private static final int MAX_RECORDS = Integer.getInteger("addressbook.recordCache", 4096);
+
+        // slot layout: state byte, next slot int (chain or free list), payload length short
+        private static final int SLOT_HEADER = 7, PAYLOAD = SLOT - SLOT_HEADER;
+        private static final byte FREE = 0, HEAD = 1, TAIL = 2;
+        private static final int H_MAGIC = 0, H_VERSION = 4, H_SLOT_SIZE = 8, H_SLOTS = 12, H_FREE = 16;
+
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final MappedByteBuffer header;
+        private final Map<Long, MappedByteBuffer> segments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+                if (size() <= MAX_SEGMENTS) return false;
+                eldest.getValue().force(); // the mapping itself is released by the GC
+                return true;
+            }
+        };
+        private final Map<Integer, Contact> records = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Integer, Contact> eldest) {
+                return size() > MAX_RECORDS;
+            }
+        };
+        private int slotCount, freeHead;
+        private boolean deferForce;
+
+        PagedStore(Path path) throws IOException {
+            file = new RandomAccessFile(path.toFile(), "rw");
+            channel = file.getChannel();
+            boolean fresh = file.length() < PAGE;
+            if (fresh) file.setLength(PAGE);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, PAGE);
+            if (fresh) {
+                header.putInt(H_MAGIC, MAGIC).putInt(H_VERSION, VERSION).putInt(H_SLOT_SIZE, SLOT)
+                      .putInt(H_SLOTS, 0).putInt(H_FREE, -1);
+                header.force();
+            } else if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_SLOT_SIZE) != SLOT) {
+                file.close();
+                throw new IOException(path + " is not a contact page file");
+            }
+            recover();
+        }
+
+        /**
+         * Rebuilds the slot count and free list from the slot states. Any slot
+         * not on a complete chain from a head - left free, orphaned by a crash
+         * mid-write, or behind a head whose tail never reached the disk - is
+         * freed again, so a stale header can never hand out a live slot.
+         */
+        private void recover() throws IOException {
+            int limit = (int) Math.min(Integer.MAX_VALUE, (file.length() - PAGE) / SLOT);
+            slotCount = 0;
+            for (int s = 0; s < limit; s++) if (buffer(s).get(position(s)) != FREE) slotCount = s + 1;
+            BitSet live = new BitSet(slotCount);
+            List<Integer> chain = new ArrayList<>();
+            for (int s = 0; s < slotCount; s++) {
+                if (buffer(s).get(position(s)) != HEAD) continue;
+                chain.clear();
+                boolean whole = true;
+                for (int t = s; t >= 0 && whole; ) {
+                    MappedByteBuffer b = buffer(t);
+                    int p = position(t), len = b.getShort(p + 5);
+                    chain.add(t);
+                    if (len < 0 || len > PAYLOAD) { whole = false; break; }
+                    t = b.getInt(p + 1);
+                    whole = t < 0 || (t < slotCount && !live.get(t) && !chain.contains(t)
+                                      && buffer(t).get(position(t)) == TAIL);
+                }
+                if (whole) for (int t : chain) live.set(t);
+            }
+            freeHead = -1;
+            deferForce = true; // rebuilt again on the next open if lost
+            try {
+                for (int s = slotCount - 1; s >= 0; s--) if (!live.get(s)) release(s);
+            } finally {
+                deferForce = false;
+            }
+            writeHeader();
+        }
+
+        @Override public void load(Collection<Contact> book) throws IOException {
+            for (int s = 0; s < slotCount; s++) {
+                if (buffer(s).get(position(s)) != HEAD) continue;
+                Contact c = decode(readChain(s));
+                c.slot = s;
+                if (book.add(c)) c.pageOut(this);
+            }
+        }
+
+        /** The stored fields of a paged-out contact. */
+        Contact read(Contact c) {
+            Contact f = records.get(c.slot);
+            if (f == null) {
+                try {
+                    f = decode(readChain(c.slot));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                records.put(c.slot, f);
+            }
+            return f;
+        }
+
+        @Override public void insert(Contact c) throws IOException {
+            byte[] data = encode(c);
+            List<Integer> chain = new ArrayList<>();
+            for (int i = slotsFor(data); i > 0; i--) chain.add(allocate());
+            writeChain(chain, data);
+            c.slot = chain.get(0);
+            c.pageOut(this);
+            writeHeader();
+        }
+
+        @Override public void update(Contact c) throws IOException {
+            if (c.slot < 0) { insert(c); return; }
+            byte[] data = encode(c);
+            List<Integer> chain = chainOf(c.slot);
+            int need = slotsFor(data), before = chain.size();
+            while (chain.size() < need) chain.add(allocate());
+            List<Integer> spare = new ArrayList<>(chain.subList(need, chain.size()));
+            chain.subList(need, chain.size()).clear();
+            writeChain(chain, data); // relink first: a crash then only orphans the spare slots
+            for (int s : spare) release(s);
+            c.pageOut(this);
+            if (chain.size() != before) writeHeader();
+        }
+
+        @Override public void delete(Contact c) throws IOException {
+            if (c.slot < 0) return;
+            c.fetch();
+            for (int s : chainOf(c.slot)) release(s);
+            c.slot = -1;
+            writeHeader();
+        }
+
+        @Override public void insertAll(Collection<Contact> batch) throws IOException {
+            deferForce = true;
+            try {
+                for (Contact c : batch) {
+                    byte[] data = encode(c);
+                    List<Integer> chain = new ArrayList<>();
+                    for (int i = slotsFor(data); i > 0; i--) chain.add(allocate());
+                    writeChain(chain, data);
+                    c.slot = chain.get(0);
+                    c.pageOut(this);
+                }
+            } finally {
+                deferForce = false;
+            }
+            for (MappedByteBuffer b : segments.values()) b.force();
+            writeHeader();
+        }
+
+        @Override public void close() throws IOException {
+            header.force();
+            for (MappedByteBuffer b : segments.values()) b.force();
+            segments.clear();
+            records.clear();
+            file.close();
+        }
+
+        // ---- slots ----
+
+        private static int slotsFor(byte[] data) {
+            return Math.max(1, (data.length + PAYLOAD - 1) / PAYLOAD);
+        }
+
+        private static long offset(int slot) { return PAGE + (long) slot * SLOT; }
+
+        private static int position(int slot) { return (int) (offset(slot) % SEGMENT); }
+
+        private MappedByteBuffer buffer(int slot) throws IOException {
+            long seg = offset(slot) / SEGMENT;
+            MappedByteBuffer b = segments.get(seg);
+            if (b == null) {
+                long end = (seg + 1) * SEGMENT;
+                if (file.length() < end) file.setLength(end);
+                b = channel.map(FileChannel.MapMode.READ_WRITE, seg * SEGMENT, SEGMENT);
+                segments.put(seg, b);
+            }
+            return b;
+        }
+
+        private int allocate() throws IOException {
+            if (freeHead < 0) return slotCount++;
+            int s = freeHead;
+            freeHead = buffer(s).getInt(position(s) + 1);
+            return s;
+        }
+
+        private void release(int s) throws IOException {
+            records.remove(s);
+            writeSlot(s, FREE, freeHead, null, 0, 0);
+            freeHead = s;
+        }
+
+        private List<Integer> chainOf(int head) throws IOException {
+            List<Integer> chain = new ArrayList<>();
+            for (int s = head; s >= 0; s = buffer(s).getInt(position(s) + 1)) chain.add(s);
+            return chain;
+        }
+
+        private byte[] readChain(int head) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(PAYLOAD);
+            for (int s = head; s >= 0; ) {
+                MappedByteBuffer b = buffer(s);
+                int p = position(s);
+                int len = b.getShort(p + 5);
+                byte[] part = new byte[len];
+                b.get(p + SLOT_HEADER, part);
+                out.write(part, 0, len);
+                s = b.getInt(p + 1);
+            }
+            return out.toByteArray();
+        }
+
+        private void writeChain(List<Integer> chain, byte[] data) throws IOException {
+            records.remove(chain.get(0));
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                int from = i * PAYLOAD, len = Math.min(PAYLOAD, data.length - from);
+                int next = i + 1 < chain.size() ? chain.get(i + 1) : -1;
+                writeSlot(chain.get(i), i == 0 ? HEAD : TAIL, next, data, from, len);
+            }
+        }
+
+        private void writeSlot(int s, byte state, int next, byte[] data, int from, int len) throws IOException {
+            MappedByteBuffer b = buffer(s);
+            int p = position(s);
+            b.put(p, state).putInt(p + 1, next).putShort(p + 5, (short) len);
+            if (len > 0) b.put(p + SLOT_HEADER, data, from, len);
+            if (!deferForce) b.force(p, SLOT);
+        }
+
+        private void writeHeader() {
+            header.putInt(H_SLOTS, slotCount).putInt(H_FREE, freeHead);
+        }
+
+        // ---- record encoding: five length-prefixed UTF-8 fields ----
+
+        private static byte[] encode(Contact c) {
+            Contact r = c.fields();
+            byte[][] f = { utf8(c.id), utf8(r.name), utf8(r.phone), utf8(r.email), utf8(r.address) };
+            int size = 0;
+            for (byte[] b : f) size += 4 + b.length;
+            ByteBuffer buf = ByteBuffer.allocate(size);
+            for (byte[] b : f) buf.putInt(b.length).put(b);
+            return buf.array();
+        }
+
+        private static byte[] utf8(String s) {
+            return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static Contact decode(byte[] data) {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            String[] f = new String[5];
+            for (int i = 0; i < f.length; i++) {
+                int len = buf.getInt();
+                f[i] = new String(data, buf.position(), len, StandardCharsets.UTF_8);
+                buf.position(buf.position() + len);
+            }
+            return new Contact(f[0], f[1], f[2], f[3], f[4]);
+        }
+    }
+
+    /**
+     * Append-only log with group commit. Callers queue a record and block until
+     * the single writer thread has appended and fsynced the batch it landed
+     * in, so concurrent or bulk writers share one fsync. Logs are numbered
+     * generations ({@code contacts.wal.N}); once the live one passes
+     * {@code addressbook.walCompactBytes} the writer rolls over to the next
+     * and a background thread writes {@code contacts.snap}, which covers every
+     * lower generation, then deletes those logs. Startup loads the snapshot and
+     * replays what remains; a record with a bad checksum ends its log, since
+     * only a write torn by a crash can produce one.
+     */
+    static final class LogStore implements ContactStore {
+        private static final String SNAPSHOT = "contacts.snap", LOG_PREFIX = "contacts.wal.";
+        private static final long COMPACT_BYTES = Long.getLong("addressbook.walCompactBytes", 64L << 20);
+        private static final int MAX_GROUP = 4096;
+        private static final String[] ROTATE = new String[0], STOP = new String[0];
+
+        private static final class Entry {
+            final String[] record;
+            final CompletableFuture<Void> done = new CompletableFuture<>();
+            Entry(String[] record) { this.record = record; }
+        }
+
+        private final Path dir;
+        private final long snapshotGen;
+        private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        private final Thread writer;
+        private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "contacts-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        private final AtomicBoolean compacting = new AtomicBoolean();
+        private volatile long logBytes;
+        private Collection<Contact> book = Collections.emptyList();
+
+        // owned by the writer thread; callers read gen only after a ROTATE completes
+        private long gen;
+        private FileChannel channel;
+        private Csv.Writer log;
+
+        LogStore(Path dir) throws IOException {
+            this.dir = dir;
+            Files.deleteIfExists(dir.resolve(SNAPSHOT + ".tmp"));
+            snapshotGen = readSnapshotGen();
+            long last = snapshotGen - 1;
+            for (long g : logGenerations()) {
+                if (g < snapshotGen || Files.size(logFile(g)) == 0) Files.delete(logFile(g)); // compacted, or never written
+                else last = g;
+            }
+            gen = last + 1;
+            openLog();
+            writer = new Thread(this::writeLoop, "contacts-wal");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /** Whether dir already holds a snapshot or any log. */
+        static boolean exists(Path dir) throws IOException {
+            if (Files.exists(dir.resolve(SNAPSHOT))) return true;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, LOG_PREFIX + "*")) {
+                return files.iterator().hasNext();
+            }
+        }
+
+        @Override public void load(Collection<Contact> book) throws IOException {
+            this.book = book;
+            Map<String, Contact> image = new LinkedHashMap<>();
+            Path snap = dir.resolve(SNAPSHOT);
+            if (Files.exists(snap)) {
+                try (Csv.Reader r = Csv.Reader.open(snap)) {
+                    r.next(); // snapshot,<generation>
+                    while (r.next()) {
+                        if (r.isBlank()) continue;
+                        Contact c = new Contact(r.string(0), r.string(1), r.string(2), r.string(3), r.string(4));
+                        image.put(c.id, c);
+                    }
+                }
+            }
+            int replayed = 0;
+            for (long g : logGenerations()) {
+                if (g >= snapshotGen) replayed += replay(logFile(g), image);
+            }
+            book.addAll(image.values());
+            if (replayed > 0) compact();
+        }
+
+        @Override public void insert(Contact c) throws IOException { commit(append("A", c)); }
+        @Override public void update(Contact c) throws IOException { commit(append("U", c)); }
+        @Override public void delete(Contact c) throws IOException { commit(append("D", c)); }
+
+        @Override public void insertAll(Collection<Contact> batch) throws IOException {
+            List<CompletableFuture<Void>> pending = new ArrayList<>(batch.size());
+            for (Contact c : batch) pending.add(append("A", c));
+            commit(CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])));
+        }
+
+        @Override public void close() throws IOException {
+            Entry stop = new Entry(STOP);
+            queue.add(stop);
+            await(stop.done);
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private CompletableFuture<Void> append(String op, Contact c) {
+            String[] rec = { op, nz(c.id), nz(c.name), nz(c.phone), nz(c.email), nz(c.address), null };
+            rec[6] = Long.toHexString(checksum(rec));
+            Entry e = new Entry(rec);
+            queue.add(e);
+            return e.done;
+        }
+
+        private void commit(CompletableFuture<Void> done) throws IOException {
+            await(done);
+            if (logBytes >= COMPACT_BYTES) compact();
+        }
+
+        // ---- writer thread ----
+
+        private void writeLoop() {
+            List<Entry> group = new ArrayList<>();
+            while (true) {
+                group.clear();
+                try {
+                    group.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(group, MAX_GROUP - 1);
+                boolean stop = false;
+                try {
+                    for (Entry e : group) {
+                        if (e.record == STOP) { stop = true; break; }
+                        if (e.record == ROTATE) {
+                            sync();
+                            log.close();
+                            gen++;
+                            openLog();
+                        } else {
+                            log.record(e.record);
+                        }
+                    }
+                    sync();
+                    if (stop) log.close();
+                    for (Entry e : group) e.done.complete(null);
+                } catch (IOException | RuntimeException ex) {
+                    for (Entry e : group) e.done.completeExceptionally(ex);
+                }
+                if (stop) return;
+            }
+        }
+
+        private void openLog() throws IOException {
+            channel = FileChannel.open(logFile(gen), StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                    StandardOpenOption.WRITE);
+            log = new Csv.Writer(channel, Csv.Writer.DEFAULT_BUFFER);
+            logBytes = channel.size();
+        }
+
+        private void sync() throws IOException {
+            log.flush();
+            channel.force(false);
+            logBytes = channel.size();
+        }
+
+        // ---- compaction ----
+
+        /** Rolls the log over, then snapshots the book as of that point off-thread. */
+        private void compact() throws IOException {
+            if (!compacting.compareAndSet(false, true)) return;
+            try {
+                Entry rotate = new Entry(ROTATE);
+                queue.add(rotate);
+                await(rotate.done);
+                long covered = gen;
+                String[][] rows = new String[book.size()][];
+                int i = 0;
+                for (Contact c : book) rows[i++] = new String[] { c.id, c.name, c.phone, c.email, c.address };
+                compactor.execute(() -> {
+                    try {
+                        writeSnapshot(covered, rows);
+                    } catch (IOException e) {
+                        System.out.println("Compaction failed: " + e.getMessage());
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                compacting.set(false);
+                throw e;
+            }
+        }
+
+        private void writeSnapshot(long covered, String[][] rows) throws IOException {
+            Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+            FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            try (Csv.Writer w = new Csv.Writer(ch, Csv.Writer.DEFAULT_BUFFER)) {
+                w.record("snapshot", Long.toString(covered));
+                for (String[] row : rows) w.record(row);
+                w.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for (long g : logGenerations()) {
+                if (g < covered) Files.deleteIfExists(logFile(g));
+            }
+        }
+
+        // ---- replay ----
+
+        private long readSnapshotGen() throws IOException {
+            Path snap = dir.resolve(SNAPSHOT);
+            if (!Files.exists(snap)) return 0;
+            try (Csv.Reader r = Csv.Reader.open(snap)) {
+                if (!r.next() || !r.fieldEquals(0, "snapshot")) throw new IOException(snap + " is not a snapshot");
+                return Long.parseLong(r.string(1));
+            }
+        }
+
+        private static int replay(Path file, Map<String, Contact> image) throws IOException {
+            if (Files.size(file) == 0) return 0;
+            int applied = 0;
+            try (Csv.Reader r = Csv.Reader.open(file)) {
+                String[] rec = new String[7];
+                while (r.next()) {
+                    if (r.fieldCount() != rec.length) { tornTail(file); break; }
+                    for (int i = 0; i < rec.length; i++) rec[i] = r.string(i);
+                    if (!Long.toHexString(checksum(rec)).equals(rec[6])) { tornTail(file); break; }
+                    if (rec[0].equals("D")) image.remove(rec[1]);
+                    else image.put(rec[1], new Contact(rec[1], rec[2], rec[3], rec[4], rec[5]));
+                    applied++;
+                }
+            }
+            return applied;
+        }
+
+        private static void tornTail(Path file) {
+            System.out.println("Ignoring incomplete record at the end of " + file.getFileName());
+        }
+
+        private List<Long> logGenerations() throws IOException {
+            List<Long> gens = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, LOG_PREFIX + "*")) {
+                for (Path f : files) {
+                    String suffix = f.getFileName().toString().substring(LOG_PREFIX.length());
+                    if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) gens.add(Long.parseLong(suffix));
+                }
+            }
+            Collections.sort(gens);
+            return gens;
+        }
+
+        private Path logFile(long g) { return dir.resolve(LOG_PREFIX + g); }
+
+        /** CRC-32 of the first six fields, each followed by a NUL. */
+        private static long checksum(String[] rec) {
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < 6; i++) {
+                crc.update(rec[i].getBytes(StandardCharsets.UTF_8));
+                crc.update(0);
+            }
+            return crc.getValue();
+        }
+
+        private static String nz(String s) { return s == null ? "" : s; }
+
+        private static void await(CompletableFuture<Void> done) throws IOException {
+            try {
+                done.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the log");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Opens the store named on the command line. The first time the paged or
+     * log store is used, an existing {@code contacts.csv} is migrated into it.
+     */
+    static ContactStore openStore(String mode) throws IOException {
+        switch (mode) {
+            case "csv":
+                return new CsvStore(DATA_FILE);
+            case "paged": {
+                boolean migrate = !Files.exists(PAGE_FILE) && Files.exists(DATA_FILE);
+                PagedStore paged = new PagedStore(PAGE_FILE);
+                if (migrate) {
+                    List<Contact> old = new ArrayList<>();
+                    new CsvStore(DATA_FILE).load(old);
+                    paged.insertAll(old);
+                    System.out.println("Migrated " + old.size() + " contacts from " + DATA_FILE + " to " + PAGE_FILE + ".");
+                }
+                return paged;
+            }
+            case "wal": {
+                Path dir = Paths.get("").toAbsolutePath();
+                boolean migrate = !LogStore.exists(dir) && Files.exists(DATA_FILE);
+                LogStore wal = new LogStore(dir);
+                if (migrate) {
+                    List<Contact> old = new ArrayList<>();
+                    new CsvStore(DATA_FILE).load(old);
+                    wal.insertAll(old);
+                    System.out.println("Migrated " + old.size() + " contacts from " + DATA_FILE + " to the log.");
+                }
+                return wal;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown store '" + mode + "' (expected csv, paged or wal)");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String mode = "csv";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--store") && i + 1 < args.length) mode = args[++i];
+        }
+        new AddressBooking(openStore(mode));
     }
 }
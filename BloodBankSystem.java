@@ -1,8 +1,19 @@
-import java.nio.charset.StandardCharsets;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class BloodBankSystem {
@@ -15,15 +26,70 @@ public class BloodBankSystem {
     // Date format
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    // Blood types
-    private static final String[] BLOOD_TYPES = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+    // Red cells keep 42 days; expired units are swept on start and then periodically
+    private static final int SHELF_LIFE_DAYS = Integer.getInteger("bloodbank.shelfLifeDays", 42);
+    private static final long SWEEP_MINUTES = Long.getLong("bloodbank.sweepMinutes", 60);
+
+    // Whole-blood donors may give again 56 days after their last donation
+    private static final int DONATION_INTERVAL_DAYS = 56;
+
+    // Units expiring within this many days count against supply in the shortage forecast
+    private static final int EXPIRY_HORIZON_DAYS = Integer.getInteger("bloodbank.expiryHorizonDays", 7);
+
+    // Changes reach disk within this many milliseconds of being made
+    private static final long FLUSH_MILLIS = Long.getLong("bloodbank.flushMillis", 200);
+
+    // Blood types, in menu order
+    enum BloodType {
+        A_POS("A+"), A_NEG("A-"), B_POS("B+"), B_NEG("B-"), AB_POS("AB+"), AB_NEG("AB-"), O_POS("O+"), O_NEG("O-");
+
+        static final BloodType[] ALL = values();
+        final String label;
+
+        BloodType(String label) { this.label = label; }
+
+        /** The type with this label, or null. */
+        static BloodType of(String label) {
+            for (BloodType t : ALL) if (t.label.equals(label)) return t;
+            return null;
+        }
+    }
+
+    private static final String[] BLOOD_TYPES = Arrays.stream(BloodType.ALL).map(t -> t.label).toArray(String[]::new);
+
+    // Red-cell compatibility over BLOOD_TYPES indices: bit d of DONORS_FOR[r] is set when type d can be given to type r
+    private static final int[] DONORS_FOR = new int[BLOOD_TYPES.length];
+    private static final int[] RECIPIENTS_OF = new int[BLOOD_TYPES.length];
+    static {
+        for (int r = 0; r < BLOOD_TYPES.length; r++) {
+            for (int d = 0; d < BLOOD_TYPES.length; d++) {
+                if (canDonate(BLOOD_TYPES[d], BLOOD_TYPES[r])) {
+                    DONORS_FOR[r] |= 1 << d;
+                    RECIPIENTS_OF[d] |= 1 << r;
+                }
+            }
+        }
+    }
 
     // In-memory data
-    private final List<Donor> donors = new ArrayList<>();
-    private final Map<String, Integer> inventory = new TreeMap<>(); // blood type -> units
-    private final List<Request> requests = new ArrayList<>();
+    private final DonorBook donors = new DonorBook();
+    // Persistence: each file is an append-only log written behind by the flusher
+    private final Flusher flusher = new Flusher(FLUSH_MILLIS);
+    private final DeltaFile donorFile = flusher.register(DONORS_CSV);
+    private final DeltaFile inventoryFile = flusher.register(INVENTORY_CSV);
+    private final DeltaFile requestFile = flusher.register(REQUESTS_CSV);
+
+    private final Inventory inventory = new Inventory(!"fifo".equalsIgnoreCase(System.getProperty("bloodbank.issue", "fefo")),
+            new Inventory.Listener() {
+                @Override public void shelved(Unit u) {
+                    inventoryFile.put(Long.toString(u.id), u.type.label, u.collected.format(DF), u.expires.format(DF));
+                }
+                @Override public void removed(Unit u) { inventoryFile.delete(Long.toString(u.id)); }
+            });
+    private final Map<String, Request> requests = new LinkedHashMap<>(); // by id, oldest first
 
     private final Scanner scanner = new Scanner(System.in);
+    private final Allocator allocator = Allocator.parse(System.getProperty("bloodbank.policy", "exact-first,split"));
 
     // Models
     static class Donor {
@@ -58,14 +124,26 @@ public class BloodBankSystem {
 
     // Start app
     private void start() {
-        initInventoryDefault();
         loadAllData();
-        mainLoop();
+        flusher.start();
+        startSweeper();
+        try {
+            mainLoop();
+        } finally {
+            flusher.close();
+        }
     }
 
-    // Initialize inventory map with zeros
-    private void initInventoryDefault() {
-        for (String bt : BLOOD_TYPES) inventory.put(bt, 0);
+    // Expire units now, then again every SWEEP_MINUTES on a daemon thread
+    private void startSweeper() {
+        int expired = inventory.sweep(LocalDate.now());
+        if (expired > 0) println("Expired " + expired + " unit(s) past their expiry date.");
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleAtFixedRate(() -> inventory.sweep(LocalDate.now()), SWEEP_MINUTES, SWEEP_MINUTES, TimeUnit.MINUTES);
     }
 
     // Load all CSV files
@@ -75,126 +153,247 @@ public class BloodBankSystem {
         loadRequests();
     }
 
-    // Save all CSV files
+    // Push every queued change to disk now
     private void saveAllData() {
-        saveDonors();
-        saveInventory();
-        saveRequests();
+        flusher.flushNow();
     }
 
     // ---------- Persistence ----------
     private void loadDonors() {
         donors.clear();
-        if (!Files.exists(DONORS_CSV)) return;
         try {
-            List<String> lines = Files.readAllLines(DONORS_CSV, StandardCharsets.UTF_8);
-            for (String ln : lines) {
-                if (ln.trim().isEmpty()) continue;
+            for (String[] f : donorFile.load()) {
                 // id,name,blood,age,contact,lastDonation
-                String[] p = splitCsv(ln, 6);
-                if (p.length < 6) continue;
-                donors.add(new Donor(p[0], p[1], p[2], Integer.parseInt(p[3]), p[4], LocalDate.parse(p[5], DF)));
+                if (f.length < 6) continue;
+                donors.add(new Donor(f[0], f[1], f[2], Integer.parseInt(f[3].trim()), f[4], LocalDate.parse(f[5], DF)));
             }
         } catch (Exception e) {
             printlnErr("Failed to load donors: " + e.getMessage());
         }
     }
 
-    private void saveDonors() {
-        try {
-            List<String> lines = donors.stream()
-                    .map(d -> String.join(",", d.id, escape(d.name), d.bloodType, String.valueOf(d.age), escape(d.contact), d.lastDonation.format(DF)))
-                    .collect(Collectors.toList());
-            Files.write(DONORS_CSV, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (Exception e) {
-            printlnErr("Failed to save donors: " + e.getMessage());
-        }
+    private void saveDonor(Donor d) {
+        donorFile.put(d.id, d.name, d.bloodType, String.valueOf(d.age), d.contact, d.lastDonation.format(DF));
     }
 
     private void loadInventory() {
-        initInventoryDefault();
-        if (!Files.exists(INVENTORY_CSV)) return;
+        inventory.clear();
         try {
-            List<String> lines = Files.readAllLines(INVENTORY_CSV, StandardCharsets.UTF_8);
-            for (String ln : lines) {
-                if (ln.trim().isEmpty()) continue;
-                String[] p = splitCsv(ln, 2);
-                if (p.length < 2) continue;
-                String type = p[0];
-                int units = Integer.parseInt(p[1]);
-                inventory.put(type, units);
+            for (String[] f : inventoryFile.load()) {
+                if (f.length >= 4) {
+                    // unitId,blood,collected,expires
+                    BloodType type = BloodType.of(f[1]);
+                    if (type != null) inventory.restore(Long.parseLong(f[0]), type, LocalDate.parse(f[2], DF), LocalDate.parse(f[3], DF));
+                } else if (f.length == 2) {
+                    // older files hold only blood,units: shelve them as collected today and retire the row
+                    BloodType type = BloodType.of(f[0]);
+                    LocalDate today = LocalDate.now();
+                    if (type != null) inventory.receive(type, Integer.parseInt(f[1].trim()), today, today.plusDays(SHELF_LIFE_DAYS));
+                    inventoryFile.delete(f[0]);
+                }
             }
         } catch (Exception e) {
             printlnErr("Failed to load inventory: " + e.getMessage());
         }
     }
 
-    private void saveInventory() {
-        try {
-            List<String> lines = inventory.entrySet().stream()
-                    .map(e -> e.getKey() + "," + e.getValue())
-                    .collect(Collectors.toList());
-            Files.write(INVENTORY_CSV, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (Exception e) {
-            printlnErr("Failed to save inventory: " + e.getMessage());
-        }
-    }
-
     private void loadRequests() {
         requests.clear();
-        if (!Files.exists(REQUESTS_CSV)) return;
         try {
-            List<String> lines = Files.readAllLines(REQUESTS_CSV, StandardCharsets.UTF_8);
-            for (String ln : lines) {
-                if (ln.trim().isEmpty()) continue;
-                String[] p = splitCsv(ln, 5);
-                if (p.length < 5) continue;
-                requests.add(new Request(p[0], p[1], p[2], Integer.parseInt(p[3]), p[4]));
+            for (String[] f : requestFile.load()) {
+                if (f.length < 5) continue;
+                requests.put(f[0], new Request(f[0], f[1], f[2], Integer.parseInt(f[3].trim()), f[4]));
             }
         } catch (Exception e) {
             printlnErr("Failed to load requests: " + e.getMessage());
         }
     }
 
-    private void saveRequests() {
-        try {
-            List<String> lines = requests.stream()
-                    .map(r -> String.join(",", r.id, escape(r.requester), r.bloodType, String.valueOf(r.units), r.status))
-                    .collect(Collectors.toList());
-            Files.write(REQUESTS_CSV, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (Exception e) {
-            printlnErr("Failed to save requests: " + e.getMessage());
-        }
+    private void saveRequest(Request r) {
+        requestFile.put(r.id, r.requester, r.bloodType, String.valueOf(r.units), r.status);
     }
 
-    // Simple CSV split that handles quoted values (basic)
-    private static String[] splitCsv(String line, int expected) {
-        List<String> out = new ArrayList<>();
-        boolean inQuote = false;
-        StringBuilder cur = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                inQuote = !inQuote;
-                continue;
+    /**
+     * One CSV store kept as an append-only log keyed by its first field: a
+     * record replaces any earlier one with the same id and "-,id" deletes it.
+     * Changes queue in memory until the flusher appends them; once the file
+     * holds more than twice the records that were live at the last
+     * compaction, the flusher folds it down to the live ones.
+     */
+    static final class DeltaFile {
+        private static final String TOMBSTONE = "-";
+        private static final int MIN_COMPACT = 1000;
+
+        final Path path;
+        private final Runnable onChange;
+        private List<String[]> pending = new ArrayList<>();
+        private long records, liveAtCompaction; // flusher side
+
+        DeltaFile(Path path, Runnable onChange) {
+            this.path = path;
+            this.onChange = onChange;
+        }
+
+        void put(String... record) { queue(record); }
+
+        void delete(String id) { queue(new String[] { TOMBSTONE, id }); }
+
+        private void queue(String[] record) {
+            synchronized (this) {
+                pending.add(record);
+            }
+            onChange.run();
+        }
+
+        private synchronized List<String[]> drain() {
+            List<String[]> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        }
+
+        private synchronized void requeue(List<String[]> batch) {
+            batch.addAll(pending);
+            pending = batch;
+        }
+
+        /** The live records, in the order their ids first appeared. */
+        Collection<String[]> load() throws IOException {
+            Map<String, String[]> live = new LinkedHashMap<>();
+            records = fold(live);
+            liveAtCompaction = live.size();
+            return live.values();
+        }
+
+        /** Appends whatever is queued, compacting afterwards if the file has grown enough. */
+        void flush() throws IOException {
+            List<String[]> batch = drain();
+            if (batch.isEmpty()) return;
+            try (Csv.Writer w = Csv.Writer.append(path)) {
+                for (String[] r : batch) w.record(r);
+            } catch (IOException | RuntimeException e) {
+                requeue(batch);
+                throw e;
+            }
+            records += batch.size();
+            if (records > Math.max(MIN_COMPACT, 2 * liveAtCompaction)) compact();
+        }
+
+        private void compact() throws IOException {
+            Map<String, String[]> live = new LinkedHashMap<>();
+            fold(live);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (Csv.Writer w = Csv.Writer.create(tmp)) {
+                for (String[] r : live.values()) w.record(r);
             }
-            if (c == ',' && !inQuote) {
-                out.add(cur.toString());
-                cur = new StringBuilder();
-            } else {
-                cur.append(c);
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            records = liveAtCompaction = live.size();
+        }
+
+        private long fold(Map<String, String[]> live) throws IOException {
+            if (!Files.exists(path)) return 0;
+            long n = 0;
+            try (Csv.Reader r = Csv.Reader.open(path)) {
+                while (r.next()) {
+                    if (r.isBlank()) continue;
+                    n++;
+                    if (r.fieldEquals(0, TOMBSTONE) && r.fieldCount() == 2) {
+                        live.remove(r.string(1));
+                        continue;
+                    }
+                    String[] f = new String[r.fieldCount()];
+                    for (int i = 0; i < f.length; i++) f[i] = r.string(i);
+                    live.put(f[0], f);
+                }
             }
+            return n;
         }
-        out.add(cur.toString());
-        return out.toArray(new String[0]);
     }
 
-    private static String escape(String s) {
-        if (s == null) return "";
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            return "\"" + s.replace("\"", "\"\"") + "\"";
+    /**
+     * Write-behind thread for the DeltaFiles. The first change after a quiet
+     * spell opens a window of flushMillis; everything queued by its end goes
+     * out together, and only files with queued changes are touched. A change
+     * therefore reaches disk within about flushMillis, and menu operations
+     * never wait on I/O. flushNow() and close() write synchronously.
+     */
+    static final class Flusher {
+        private final long flushMillis;
+        private final List<DeltaFile> files = new ArrayList<>();
+        private final Object signal = new Object();
+        private final Object io = new Object();
+        private final Thread thread = new Thread(this::run, "bloodbank-flusher");
+        private boolean changed, closed;
+
+        Flusher(long flushMillis) {
+            this.flushMillis = flushMillis;
+            thread.setDaemon(true);
+        }
+
+        DeltaFile register(Path path) {
+            DeltaFile f = new DeltaFile(path, this::changed);
+            files.add(f);
+            return f;
+        }
+
+        void start() { thread.start(); }
+
+        void flushNow() {
+            synchronized (io) {
+                for (DeltaFile f : files) {
+                    try {
+                        f.flush();
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("[ERROR] Failed to save " + f.path + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        void close() {
+            synchronized (signal) {
+                closed = true;
+                signal.notifyAll();
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushNow();
+        }
+
+        private void changed() {
+            synchronized (signal) {
+                changed = true;
+                signal.notifyAll();
+            }
+        }
+
+        private void run() {
+            while (true) {
+                synchronized (signal) {
+                    while (!changed && !closed) {
+                        try {
+                            signal.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (closed) return;
+                    // hold the window open so changes made meanwhile ride along
+                    long deadline = System.currentTimeMillis() + flushMillis;
+                    for (long left = flushMillis; left > 0 && !closed; left = deadline - System.currentTimeMillis()) {
+                        try {
+                            signal.wait(left);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    changed = false;
+                }
+                flushNow();
+            }
         }
-        return s;
     }
 
     // ---------- CLI ----------
@@ -217,7 +416,7 @@ public class BloodBankSystem {
                 case "3": requestsMenu(); break;
                 case "4": reportsMenu(); break;
                 case "5": saveAllData(); println("Data saved."); break;
-                case "0": saveAllData(); println("Exiting. Data saved."); running = false; break;
+                case "0": println("Exiting. Data saved."); running = false; break;
                 default: println("Invalid choice."); break;
             }
         }
@@ -234,6 +433,7 @@ public class BloodBankSystem {
             println("3) Edit Donor");
             println("4) Delete Donor");
             println("5) Search Donors");
+            println("6) Eligible Donors by Type");
             println("0) Back");
             print("Choose > ");
             String ch = scanner.nextLine().trim();
@@ -243,6 +443,7 @@ public class BloodBankSystem {
                 case "3": editDonor(); break;
                 case "4": deleteDonor(); break;
                 case "5": searchDonors(); break;
+                case "6": eligibleDonors(); break;
                 case "0": back = true; break;
                 default: println("Invalid choice."); break;
             }
@@ -270,45 +471,156 @@ public class BloodBankSystem {
         print("Last donation date (yyyy-MM-dd) or blank for today: "); String dateStr = scanner.nextLine().trim();
         LocalDate ld = dateStr.isEmpty() ? LocalDate.now() : parseDate(dateStr);
         if (ld == null) { println("Invalid date."); return; }
-        String id = "D" + (donors.size() + 1) + "_" + (System.currentTimeMillis() % 10000);
-        donors.add(new Donor(id, name, blood, age, contact, ld));
-        saveDonors();
+        String id;
+        int n = donors.size() + 1;
+        do { id = "D" + n++ + "_" + (System.currentTimeMillis() % 10000); } while (donors.containsId(id));
+        Donor donor = new Donor(id, name, blood, age, contact, ld);
+        donors.add(donor);
+        saveDonor(donor);
         println("Donor added: " + id);
     }
 
     private void editDonor() {
         print("Enter Donor ID to edit: "); String id = scanner.nextLine().trim();
-        Optional<Donor> od = donors.stream().filter(d -> d.id.equals(id)).findFirst();
-        if (!od.isPresent()) { println("Donor not found."); return; }
-        Donor d = od.get();
+        Donor d = donors.get(id);
+        if (d == null) { println("Donor not found."); return; }
         println("Leave blank to keep current value.");
-        print("Name (" + d.name + "): "); String name = scanner.nextLine().trim(); if (!name.isEmpty()) d.name = name;
+        print("Name (" + d.name + "): "); String name = scanner.nextLine().trim();
         println("Blood Type (" + d.bloodType + "): ");
         String b = chooseBloodTypeAllowBlank();
-        if (b != null) d.bloodType = b;
-        print("Age (" + d.age + "): "); String ageStr = scanner.nextLine().trim(); if (!ageStr.isEmpty()) { int age = parseInt(ageStr, -1); if (age>0) d.age = age; else println("Invalid age ignored."); }
-        print("Contact (" + d.contact + "): "); String contact = scanner.nextLine().trim(); if (!contact.isEmpty()) d.contact = contact;
-        print("Last donation (" + d.lastDonation.format(DF) + "): "); String dateStr = scanner.nextLine().trim(); if (!dateStr.isEmpty()) { LocalDate ld = parseDate(dateStr); if (ld!=null) d.lastDonation = ld; else println("Invalid date ignored."); }
-        saveDonors();
+        print("Age (" + d.age + "): "); String ageStr = scanner.nextLine().trim();
+        int age = ageStr.isEmpty() ? d.age : parseInt(ageStr, -1);
+        if (age <= 0) { println("Invalid age ignored."); age = d.age; }
+        print("Contact (" + d.contact + "): "); String contact = scanner.nextLine().trim();
+        print("Last donation (" + d.lastDonation.format(DF) + "): "); String dateStr = scanner.nextLine().trim();
+        LocalDate ld = dateStr.isEmpty() ? d.lastDonation : parseDate(dateStr);
+        if (ld == null) { println("Invalid date ignored."); ld = d.lastDonation; }
+        int newAge = age;
+        LocalDate newLast = ld;
+        donors.edit(d, x -> {
+            if (!name.isEmpty()) x.name = name;
+            if (b != null) x.bloodType = b;
+            x.age = newAge;
+            if (!contact.isEmpty()) x.contact = contact;
+            x.lastDonation = newLast;
+        });
+        saveDonor(d);
         println("Donor updated.");
     }
 
     private void deleteDonor() {
         print("Enter Donor ID to delete: "); String id = scanner.nextLine().trim();
-        Optional<Donor> od = donors.stream().filter(d -> d.id.equals(id)).findFirst();
-        if (!od.isPresent()) { println("Donor not found."); return; }
-        print("Confirm delete donor " + od.get().name + " (y/n): "); String conf = scanner.nextLine().trim().toLowerCase();
-        if ("y".equals(conf)) { donors.remove(od.get()); saveDonors(); println("Deleted."); } else println("Cancelled.");
+        Donor d = donors.get(id);
+        if (d == null) { println("Donor not found."); return; }
+        print("Confirm delete donor " + d.name + " (y/n): "); String conf = scanner.nextLine().trim().toLowerCase();
+        if ("y".equals(conf)) { donors.remove(d); donorFile.delete(d.id); println("Deleted."); } else println("Cancelled.");
     }
 
     private void searchDonors() {
         print("Search term (name or blood): "); String q = scanner.nextLine().trim().toLowerCase();
-        List<Donor> res = donors.stream().filter(d -> d.name.toLowerCase().contains(q) || d.bloodType.toLowerCase().contains(q)).collect(Collectors.toList());
+        BloodType exact = BloodType.of(q.toUpperCase());
+        Collection<Donor> res = exact != null
+                ? donors.ofType(exact)
+                : donors.stream().filter(d -> d.name.toLowerCase().contains(q) || d.bloodType.toLowerCase().contains(q)).collect(Collectors.toList());
         if (res.isEmpty()) { println("No results."); return; }
         println("ID\tName\tBlood\tAge\tContact\tLastDonation");
         for (Donor d : res) println(String.join("\t", d.id, d.name, d.bloodType, String.valueOf(d.age), d.contact, d.lastDonation.format(DF)));
     }
 
+    // Donors of one type whose last donation is at least DONATION_INTERVAL_DAYS ago, longest-rested first
+    private void eligibleDonors() {
+        String blood = chooseBloodType();
+        if (blood == null) return;
+        NavigableSet<Donor> res = donors.eligible(BloodType.of(blood), LocalDate.now());
+        println(res.size() + " " + blood + " donor(s) eligible today.");
+        if (res.isEmpty()) return;
+        println("ID\tName\tBlood\tAge\tContact\tLastDonation");
+        for (Donor d : res) println(String.join("\t", d.id, d.name, d.bloodType, String.valueOf(d.age), d.contact, d.lastDonation.format(DF)));
+    }
+
+    /**
+     * Donors in insertion order, hashed by id, plus one set per blood type
+     * sorted by last donation date, so "eligible today" is a head-set range
+     * scan instead of a pass over everyone. All changes go through add,
+     * remove and edit, which re-file a donor under its new type and date.
+     */
+    static final class DonorBook extends AbstractCollection<Donor> {
+        private static final Comparator<Donor> BY_LAST_DONATION =
+                Comparator.comparing((Donor d) -> d.lastDonation).thenComparing(d -> d.id);
+
+        private final Map<String, Donor> byId = new LinkedHashMap<>();
+        private final EnumMap<BloodType, TreeSet<Donor>> byType = new EnumMap<>(BloodType.class);
+
+        DonorBook() {
+            for (BloodType t : BloodType.ALL) byType.put(t, new TreeSet<>(BY_LAST_DONATION));
+        }
+
+        @Override public int size() { return byId.size(); }
+
+        /** Returns false, leaving the book unchanged, if the id is already taken. */
+        @Override public boolean add(Donor d) {
+            if (byId.putIfAbsent(d.id, d) != null) return false;
+            index(d);
+            return true;
+        }
+
+        @Override public boolean remove(Object o) {
+            if (!(o instanceof Donor)) return false;
+            Donor d = (Donor) o;
+            if (byId.get(d.id) != d) return false;
+            byId.remove(d.id);
+            unindex(d);
+            return true;
+        }
+
+        @Override public void clear() {
+            byId.clear();
+            for (TreeSet<Donor> set : byType.values()) set.clear();
+        }
+
+        @Override public Iterator<Donor> iterator() {
+            Iterator<Donor> it = byId.values().iterator();
+            return new Iterator<Donor>() {
+                private Donor last;
+                @Override public boolean hasNext() { return it.hasNext(); }
+                @Override public Donor next() { return last = it.next(); }
+                @Override public void remove() { it.remove(); unindex(last); }
+            };
+        }
+
+        Donor get(String id) { return byId.get(id); }
+
+        boolean containsId(String id) { return byId.containsKey(id); }
+
+        /** Donors of type t, oldest last donation first. */
+        NavigableSet<Donor> ofType(BloodType t) {
+            return Collections.unmodifiableNavigableSet(byType.get(t));
+        }
+
+        /** Donors of type t whose last donation was DONATION_INTERVAL_DAYS or more before today. */
+        NavigableSet<Donor> eligible(BloodType t, LocalDate today) {
+            Donor bound = new Donor("\uffff", "", t.label, 0, "", today.minusDays(DONATION_INTERVAL_DAYS));
+            return Collections.unmodifiableNavigableSet(byType.get(t).headSet(bound, true));
+        }
+
+        /** Applies change to a donor in the book; the id must not change. */
+        void edit(Donor d, Consumer<Donor> change) {
+            unindex(d);
+            change.accept(d);
+            index(d);
+        }
+
+        private void index(Donor d) {
+            BloodType t = BloodType.of(d.bloodType);
+            if (t != null) byType.get(t).add(d);
+        }
+
+        private void unindex(Donor d) {
+            BloodType t = BloodType.of(d.bloodType);
+            if (t != null) byType.get(t).remove(d);
+        }
+    }
+
     // ---------- Inventory Menu ----------
     private void inventoryMenu() {
         boolean back = false;
@@ -318,6 +630,7 @@ public class BloodBankSystem {
             println("1) View Inventory");
             println("2) Add Units");
             println("3) Remove Units");
+            println("4) Purge Expired Units");
             println("0) Back");
             print("Choose > ");
             String ch = scanner.nextLine().trim();
@@ -325,6 +638,7 @@ public class BloodBankSystem {
                 case "1": viewInventory(); break;
                 case "2": modifyInventory(true); break;
                 case "3": modifyInventory(false); break;
+                case "4": purgeExpired(); break;
                 case "0": back = true; break;
                 default: println("Invalid choice."); break;
             }
@@ -333,8 +647,14 @@ public class BloodBankSystem {
 
     private void viewInventory() {
         println("");
-        println("BloodType\tUnits");
-        inventory.forEach((k,v) -> println(k + "\t" + v));
+        println("BloodType\tUnits\tIssued\tExpired");
+        int[] units = inventory.snapshot();
+        for (BloodType t : BloodType.ALL) println(t.label + "\t" + units[t.ordinal()] + "\t" + inventory.issued(t) + "\t" + inventory.expired(t));
+    }
+
+    private void purgeExpired() {
+        int expired = inventory.sweep(LocalDate.now());
+        println("Expired " + expired + " unit(s).");
     }
 
     private void modifyInventory(boolean add) {
@@ -344,12 +664,18 @@ public class BloodBankSystem {
         String unitsStr = scanner.nextLine().trim();
         int units = parseInt(unitsStr, -1);
         if (units <= 0) { println("Invalid units."); return; }
-        int current = inventory.getOrDefault(type, 0);
-        int updated = add ? current + units : current - units;
-        if (updated < 0) { println("Insufficient units. Current: " + current); return; }
-        inventory.put(type, updated);
-        saveInventory();
-        println("Inventory updated: " + type + " = " + updated);
+        BloodType t = BloodType.of(type);
+        if (add) {
+            print("Collection date (yyyy-MM-dd) or blank for today: "); String dateStr = scanner.nextLine().trim();
+            LocalDate collected = dateStr.isEmpty() ? LocalDate.now() : parseDate(dateStr);
+            if (collected == null) { println("Invalid date."); return; }
+            LocalDate expires = collected.plusDays(SHELF_LIFE_DAYS);
+            if (expires.isBefore(LocalDate.now())) { println("Units collected on " + collected.format(DF) + " expired on " + expires.format(DF) + "; not added."); return; }
+            inventory.receive(t, units, collected, expires);
+        } else if (inventory.issue(t, units, LocalDate.now()) == null) {
+            println("Insufficient units. Current: " + inventory.get(t)); return;
+        }
+        println("Inventory updated: " + type + " = " + inventory.get(t));
     }
 
     // ---------- Requests Menu ----------
@@ -362,6 +688,7 @@ public class BloodBankSystem {
             println("2) Create Request");
             println("3) Fulfill Request");
             println("4) Cancel Request");
+            println("5) Fulfill All Pending (batch)");
             println("0) Back");
             print("Choose > ");
             String ch = scanner.nextLine().trim();
@@ -370,6 +697,7 @@ public class BloodBankSystem {
                 case "2": createRequest(); break;
                 case "3": fulfillRequest(); break;
                 case "4": cancelRequest(); break;
+                case "5": fulfillAllPending(); break;
                 case "0": back = true; break;
                 default: println("Invalid choice."); break;
             }
@@ -379,7 +707,7 @@ public class BloodBankSystem {
     private void listRequests() {
         println("");
         println("ID\tRequester\tBlood\tUnits\tStatus");
-        for (Request r : requests) println(String.join("\t", r.id, r.requester, r.bloodType, String.valueOf(r.units), r.status));
+        for (Request r : requests.values()) println(String.join("\t", r.id, r.requester, r.bloodType, String.valueOf(r.units), r.status));
         if (requests.isEmpty()) println("(no requests)");
     }
 
@@ -391,35 +719,56 @@ public class BloodBankSystem {
         print("Units required: "); String unitsStr = scanner.nextLine().trim();
         int units = parseInt(unitsStr, -1);
         if (units <= 0) { println("Invalid units."); return; }
-        String id = "R" + (requests.size() + 1) + "_" + (System.currentTimeMillis() % 10000);
-        requests.add(new Request(id, requester, blood, units, "Pending"));
-        saveRequests();
+        String id;
+        int n = requests.size() + 1;
+        do { id = "R" + n++ + "_" + (System.currentTimeMillis() % 10000); } while (requests.containsKey(id));
+        Request req = new Request(id, requester, blood, units, "Pending");
+        requests.put(id, req);
+        saveRequest(req);
         println("Request created: " + id);
     }
 
     private void fulfillRequest() {
         print("Enter Request ID to fulfill: "); String id = scanner.nextLine().trim();
-        Optional<Request> or = requests.stream().filter(r -> r.id.equals(id)).findFirst();
-        if (!or.isPresent()) { println("Request not found."); return; }
-        Request req = or.get();
+        Request req = requests.get(id);
+        if (req == null) { println("Request not found."); return; }
         if (!"Pending".equals(req.status)) { println("Request is not pending (status=" + req.status + ")"); return; }
-        int available = inventory.getOrDefault(req.bloodType, 0);
-        if (available < req.units) { println("Insufficient inventory ("+available+" units)."); return; }
-        inventory.put(req.bloodType, available - req.units);
+        BloodType recipient = BloodType.of(req.bloodType);
+        if (recipient == null) { println("Unknown blood type " + req.bloodType + "."); return; }
+        int[] taken = inventory.allocate(allocator, recipient.ordinal(), req.units, LocalDate.now());
+        if (taken == null) { println("Insufficient compatible inventory (" + allocator.usable(recipient.ordinal(), inventory.current()) + " units usable)."); return; }
         req.status = "Fulfilled";
-        saveInventory();
-        saveRequests();
-        println("Request fulfilled and inventory updated.");
+        saveRequest(req);
+        println("Request fulfilled with " + describe(taken) + ".");
+    }
+
+    // One pass over every pending request, oldest first; each one reserves its units atomically
+    private void fulfillAllPending() {
+        LocalDate today = LocalDate.now();
+        int[] drawn = new int[BLOOD_TYPES.length];
+        int fulfilled = 0, waiting = 0;
+        for (Request req : requests.values()) {
+            if (!"Pending".equals(req.status)) continue;
+            BloodType recipient = BloodType.of(req.bloodType);
+            int[] taken = recipient == null || (DONORS_FOR[recipient.ordinal()] & inventory.nonEmptyMask()) == 0
+                    ? null : inventory.allocate(allocator, recipient.ordinal(), req.units, today);
+            if (taken == null) { waiting++; continue; }
+            for (int d = 0; d < taken.length; d++) drawn[d] += taken[d];
+            req.status = "Fulfilled";
+            saveRequest(req);
+            fulfilled++;
+        }
+        println("Fulfilled " + fulfilled + " request(s), " + waiting + " still pending.");
+        if (fulfilled > 0) println("Issued: " + describe(drawn));
     }
 
     private void cancelRequest() {
         print("Enter Request ID to cancel: "); String id = scanner.nextLine().trim();
-        Optional<Request> or = requests.stream().filter(r -> r.id.equals(id)).findFirst();
-        if (!or.isPresent()) { println("Request not found."); return; }
-        Request req = or.get();
+        Request req = requests.get(id);
+        if (req == null) { println("Request not found."); return; }
         if ("Fulfilled".equals(req.status)) { println("Fulfilled request cannot be cancelled."); return; }
         req.status = "Cancelled";
-        saveRequests();
+        saveRequest(req);
         println("Request cancelled.");
     }
 
@@ -432,6 +781,8 @@ public class BloodBankSystem {
             println("1) Quick Inventory Report (console)");
             println("2) Export donors CSV");
             println("3) Export requests CSV");
+            println("4) Summary Report (console)");
+            println("5) Export summary report (.csv or .html)");
             println("0) Back");
             print("Choose > ");
             String ch = scanner.nextLine().trim();
@@ -439,6 +790,8 @@ public class BloodBankSystem {
                 case "1": showQuickReport(); break;
                 case "2": exportDonorsCsv(); break;
                 case "3": exportRequestsCsv(); break;
+                case "4": showSummaryReport(); break;
+                case "5": exportSummaryReport(); break;
                 case "0": back = true; break;
                 default: println("Invalid choice."); break;
             }
@@ -449,13 +802,14 @@ public class BloodBankSystem {
         println("");
         println("=== Quick Report ===");
         println("-- Inventory --");
-        inventory.forEach((k,v) -> println(String.format("%s : %d", k, v)));
+        int[] units = inventory.snapshot();
+        for (BloodType t : BloodType.ALL) println(String.format("%s : %d (issued %d, expired %d)", t.label, units[t.ordinal()], inventory.issued(t), inventory.expired(t)));
         println("");
         println("-- Donors (" + donors.size() + ") --");
         donors.stream().limit(20).forEach(d -> println(String.format("%s | %s | %s | %d | %s", d.id, d.name, d.bloodType, d.age, d.lastDonation.format(DF))));
         println("");
         println("-- Requests (" + requests.size() + ") --");
-        requests.stream().limit(20).forEach(r -> println(String.format("%s | %s | %s | %d | %s", r.id, r.requester, r.bloodType, r.units, r.status)));
+        requests.values().stream().limit(20).forEach(r -> println(String.format("%s | %s | %s | %d | %s", r.id, r.requester, r.bloodType, r.units, r.status)));
     }
 
     private void exportDonorsCsv() {
@@ -463,11 +817,10 @@ public class BloodBankSystem {
         String file = scanner.nextLine().trim();
         if (file.isEmpty()) { println("Cancelled."); return; }
         Path out = Paths.get(file);
-        try {
-            List<String> lines = donors.stream()
-                    .map(d -> String.join(",", d.id, escape(d.name), d.bloodType, String.valueOf(d.age), d.contact, d.lastDonation.format(DF)))
-                    .collect(Collectors.toList());
-            Files.write(out, lines, StandardCharsets.UTF_8);
+        try (Csv.Writer w = Csv.Writer.create(out)) {
+            for (Donor d : donors) {
+                w.field(d.id).field(d.name).field(d.bloodType).field(d.age).field(d.contact).field(d.lastDonation.format(DF)).endRecord();
+            }
             println("Exported donors to " + out.toAbsolutePath());
         } catch (Exception e) { printlnErr("Export failed: " + e.getMessage()); }
     }
@@ -477,15 +830,701 @@ public class BloodBankSystem {
         String file = scanner.nextLine().trim();
         if (file.isEmpty()) { println("Cancelled."); return; }
         Path out = Paths.get(file);
-        try {
-            List<String> lines = requests.stream()
-                    .map(r -> String.join(",", r.id, escape(r.requester), r.bloodType, String.valueOf(r.units), r.status))
-                    .collect(Collectors.toList());
-            Files.write(out, lines, StandardCharsets.UTF_8);
+        try (Csv.Writer w = Csv.Writer.create(out)) {
+            for (Request r : requests.values()) {
+                w.field(r.id).field(r.requester).field(r.bloodType).field(r.units).field(r.status).endRecord();
+            }
             println("Exported requests to " + out.toAbsolutePath());
         } catch (Exception e) { printlnErr("Export failed: " + e.getMessage()); }
     }
 
+    private void showSummaryReport() {
+        long start = System.nanoTime();
+        Report report = Report.of(donors, requests.values(), inventory, LocalDate.now(), EXPIRY_HORIZON_DAYS);
+        long micros = (System.nanoTime() - start) / 1000;
+        println("");
+        println("=== Summary Report (" + report.today.format(DF) + ") ===");
+        try {
+            report.write(new Report.TextSink(System.out));
+        } catch (IOException e) { printlnErr("Report failed: " + e.getMessage()); }
+        println("");
+        println("Aggregated " + donors.size() + " donors, " + requests.size() + " requests in " + micros + " us.");
+    }
+
+    private void exportSummaryReport() {
+        print("Enter filename for the summary report (e.g. report.csv or report.html): ");
+        String file = scanner.nextLine().trim();
+        if (file.isEmpty()) { println("Cancelled."); return; }
+        Path out = Paths.get(file);
+        String name = file.toLowerCase(Locale.ROOT);
+        Report report = Report.of(donors, requests.values(), inventory, LocalDate.now(), EXPIRY_HORIZON_DAYS);
+        try (Report.Sink sink = name.endsWith(".html") || name.endsWith(".htm")
+                ? new Report.HtmlSink(Files.newBufferedWriter(out), "Blood bank report " + report.today.format(DF))
+                : new Report.CsvSink(Csv.Writer.create(out))) {
+            report.write(sink);
+            println("Exported summary report to " + out.toAbsolutePath());
+        } catch (Exception e) { printlnErr("Export failed: " + e.getMessage()); }
+    }
+
+    /**
+     * Summary aggregates: donors per blood type and age band, request units
+     * by status, and a per-type shortage forecast (usable units, less those
+     * expiring within the horizon, less pending demand). Each store is
+     * folded in one pass into fixed-size counters; the folds run as
+     * parallel streams whose partial reports are combined with merge().
+     * write() streams rows to a Sink as it computes them, so neither the
+     * aggregation nor the output holds per-record state.
+     */
+    static final class Report {
+        private static final int[] AGE_BANDS = { 18, 26, 36, 46, 56, 66 };
+        private static final String[] BAND_LABELS = { "<18", "18-25", "26-35", "36-45", "46-55", "56-65", "66+" };
+        private static final int TYPES = BloodType.ALL.length;
+
+        final LocalDate today;
+        final int horizonDays;
+        private final LocalDate eligibleBy, expiringBy;
+
+        private final long[][] donorsByBand = new long[TYPES][BAND_LABELS.length];
+        private final long[] eligible = new long[TYPES];
+        private final long[] pendingRequests = new long[TYPES];
+        private final long[] pendingUnits = new long[TYPES];
+        private final long[] fulfilledUnits = new long[TYPES];
+        private final long[] cancelledUnits = new long[TYPES];
+        private final long[] available = new long[TYPES];
+        private final long[] expiring = new long[TYPES];
+
+        Report(LocalDate today, int horizonDays) {
+            this.today = today;
+            this.horizonDays = horizonDays;
+            this.eligibleBy = today.minusDays(DONATION_INTERVAL_DAYS);
+            this.expiringBy = today.plusDays(horizonDays);
+        }
+
+        static Report of(Collection<Donor> donors, Collection<Request> requests, Inventory inventory, LocalDate today, int horizonDays) {
+            Report byDonor = donors.parallelStream()
+                    .collect(() -> new Report(today, horizonDays), Report::donor, Report::merge);
+            Report byRequest = requests.parallelStream()
+                    .collect(() -> new Report(today, horizonDays), Report::request, Report::merge);
+            Report byUnit = Arrays.stream(BloodType.ALL).parallel()
+                    .collect(() -> new Report(today, horizonDays), (r, t) -> inventory.forEachUnit(t, r::unit), Report::merge);
+            return byDonor.merge(byRequest).merge(byUnit);
+        }
+
+        void donor(Donor d) {
+            BloodType t = BloodType.of(d.bloodType);
+            if (t == null) return;
+            donorsByBand[t.ordinal()][band(d.age)]++;
+            if (!d.lastDonation.isAfter(eligibleBy)) eligible[t.ordinal()]++;
+        }
+
+        void request(Request r) {
+            BloodType t = BloodType.of(r.bloodType);
+            if (t == null) return;
+            int i = t.ordinal();
+            switch (r.status) {
+                case "Pending": pendingRequests[i]++; pendingUnits[i] += r.units; break;
+                case "Fulfilled": fulfilledUnits[i] += r.units; break;
+                case "Cancelled": cancelledUnits[i] += r.units; break;
+                default: break;
+            }
+        }
+
+        /** Expired units still waiting for the sweeper are not counted as supply. */
+        void unit(Unit u) {
+            if (u.isExpired(today)) return;
+            int i = u.type.ordinal();
+            available[i]++;
+            if (!u.expires.isAfter(expiringBy)) expiring[i]++;
+        }
+
+        Report merge(Report o) {
+            for (int i = 0; i < TYPES; i++) {
+                for (int b = 0; b < BAND_LABELS.length; b++) donorsByBand[i][b] += o.donorsByBand[i][b];
+                eligible[i] += o.eligible[i];
+                pendingRequests[i] += o.pendingRequests[i];
+                pendingUnits[i] += o.pendingUnits[i];
+                fulfilledUnits[i] += o.fulfilledUnits[i];
+                cancelledUnits[i] += o.cancelledUnits[i];
+                available[i] += o.available[i];
+                expiring[i] += o.expiring[i];
+            }
+            return this;
+        }
+
+        private static int band(int age) {
+            int b = 0;
+            while (b < AGE_BANDS.length && age >= AGE_BANDS[b]) b++;
+            return b;
+        }
+
+        void write(Sink out) throws IOException {
+            String[] columns = new String[BAND_LABELS.length + 3];
+            columns[0] = "Type";
+            System.arraycopy(BAND_LABELS, 0, columns, 1, BAND_LABELS.length);
+            columns[columns.length - 2] = "Total";
+            columns[columns.length - 1] = "Eligible";
+            out.section("Donors by blood type and age band", columns);
+            Object[] row = new Object[columns.length];
+            long[] totals = new long[columns.length - 1];
+            for (BloodType t : BloodType.ALL) {
+                int i = t.ordinal();
+                long sum = 0;
+                row[0] = t.label;
+                for (int b = 0; b < BAND_LABELS.length; b++) {
+                    row[b + 1] = donorsByBand[i][b];
+                    totals[b] += donorsByBand[i][b];
+                    sum += donorsByBand[i][b];
+                }
+                row[row.length - 2] = sum;
+                row[row.length - 1] = eligible[i];
+                totals[totals.length - 2] += sum;
+                totals[totals.length - 1] += eligible[i];
+                out.row(row);
+            }
+            row[0] = "Total";
+            for (int c = 0; c < totals.length; c++) row[c + 1] = totals[c];
+            out.row(row);
+
+            out.section("Requests by blood type", "Type", "Pending requests", "Pending units", "Fulfilled units", "Cancelled units");
+            long pr = 0, pu = 0, fu = 0, cu = 0;
+            for (BloodType t : BloodType.ALL) {
+                int i = t.ordinal();
+                out.row(t.label, pendingRequests[i], pendingUnits[i], fulfilledUnits[i], cancelledUnits[i]);
+                pr += pendingRequests[i]; pu += pendingUnits[i]; fu += fulfilledUnits[i]; cu += cancelledUnits[i];
+            }
+            out.row("Total", pr, pu, fu, cu);
+
+            out.section("Shortage forecast", "Type", "Available", "Expiring in " + horizonDays + "d", "Pending units", "Projected", "Status");
+            long av = 0, ex = 0, pending = 0;
+            for (BloodType t : BloodType.ALL) {
+                int i = t.ordinal();
+                long projected = available[i] - expiring[i] - pendingUnits[i];
+                out.row(t.label, available[i], expiring[i], pendingUnits[i], projected, projected < 0 ? "SHORT" : "OK");
+                av += available[i]; ex += expiring[i]; pending += pendingUnits[i];
+            }
+            long projected = av - ex - pending;
+            out.row("Total", av, ex, pending, projected, projected < 0 ? "SHORT" : "OK");
+        }
+
+        /** Destination for report rows; each section starts with its column headers. */
+        interface Sink extends Closeable {
+            void section(String title, String... columns) throws IOException;
+            void row(Object... cells) throws IOException;
+        }
+
+        /** Fixed-width columns for the console; close() leaves the stream open. */
+        static final class TextSink implements Sink {
+            private final PrintStream out;
+            private final StringBuilder line = new StringBuilder();
+            private int[] widths = new int[0];
+
+            TextSink(PrintStream out) { this.out = out; }
+
+            @Override public void section(String title, String... columns) {
+                widths = new int[columns.length];
+                for (int c = 0; c < columns.length; c++) widths[c] = Math.max(c == 0 ? 6 : 8, columns[c].length());
+                out.println();
+                out.println("-- " + title + " --");
+                row((Object[]) columns);
+            }
+
+            @Override public void row(Object... cells) {
+                line.setLength(0);
+                for (int c = 0; c < cells.length; c++) {
+                    String v = String.valueOf(cells[c]);
+                    int pad = Math.max(0, (c < widths.length ? widths[c] : 0) - v.length());
+                    if (c == 0) {
+                        line.append(v).append(" ".repeat(pad));
+                    } else {
+                        line.append(' ').append(" ".repeat(pad)).append(v);
+                    }
+                }
+                out.println(line);
+            }
+
+            @Override public void close() { out.flush(); }
+        }
+
+        /** Sections separated by a blank record, each a title record then a header record. */
+        static final class CsvSink implements Sink {
+            private final Csv.Writer out;
+            private boolean first = true;
+
+            CsvSink(Csv.Writer out) { this.out = out; }
+
+            @Override public void section(String title, String... columns) throws IOException {
+                if (!first) out.endRecord();
+                first = false;
+                out.record(title);
+                out.record(columns);
+            }
+
+            @Override public void row(Object... cells) throws IOException {
+                for (Object c : cells) {
+                    if (c instanceof Long) out.field((long) (Long) c);
+                    else out.field(String.valueOf(c));
+                }
+                out.endRecord();
+            }
+
+            @Override public void close() throws IOException { out.close(); }
+        }
+
+        /** A standalone page with one table per section. */
+        static final class HtmlSink implements Sink {
+            private final Writer out;
+            private boolean inTable;
+
+            HtmlSink(Writer out, String title) throws IOException {
+                this.out = out;
+                out.write("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>");
+                text(title);
+                out.write("</title></head>\n<body>\n<h1>");
+                text(title);
+                out.write("</h1>\n");
+            }
+
+            @Override public void section(String title, String... columns) throws IOException {
+                endTable();
+                out.write("<h2>");
+                text(title);
+                out.write("</h2>\n<table border=\"1\">\n");
+                cells("th", (Object[]) columns);
+                inTable = true;
+            }
+
+            @Override public void row(Object... cells) throws IOException { cells("td", cells); }
+
+            @Override public void close() throws IOException {
+                try {
+                    endTable();
+                    out.write("</body></html>\n");
+                } finally {
+                    out.close();
+                }
+            }
+
+            private void cells(String tag, Object... cells) throws IOException {
+                out.write("<tr>");
+                for (Object c : cells) {
+                    out.write('<'); out.write(tag); out.write('>');
+                    text(String.valueOf(c));
+                    out.write("</"); out.write(tag); out.write('>');
+                }
+                out.write("</tr>\n");
+            }
+
+            private void endTable() throws IOException {
+                if (inTable) out.write("</table>\n");
+                inTable = false;
+            }
+
+            private void text(String s) throws IOException {
+                for (int i = 0; i < s.length(); i++) {
+                    char ch = s.charAt(i);
+                    switch (ch) {
+                        case '<': out.write("&lt;"); break;
+                        case '>': out.write("&gt;"); break;
+                        case '&': out.write("&amp;"); break;
+                        case '"': out.write("&quot;"); break;
+                        default: out.write(ch);
+                    }
+                }
+            }
+        }
+    }
+
+    // ---------- Allocation ----------
+
+    /** ABO: O gives to everyone, A and B to themselves and AB. Rh: negative gives to both. */
+    private static boolean canDonate(String donor, String recipient) {
+        String da = donor.substring(0, donor.length() - 1), ra = recipient.substring(0, recipient.length() - 1);
+        boolean abo = da.equals("O") || da.equals(ra) || ra.equals("AB");
+        boolean rh = donor.endsWith("-") || recipient.endsWith("+");
+        return abo && rh;
+    }
+
+    /**
+     * Chooses compatible stock for a request. The policy comes from
+     * -Dbloodbank.policy, a comma list of: exact-first | any-first,
+     * split | no-split, and o-neg-reserve=N (O- units kept back for O-
+     * recipients). After the exact type (when preferred), donor types are
+     * tried from the least to the most widely compatible, so O- goes last.
+     */
+    static final class Allocator {
+        private static final int O_NEG = BloodType.O_NEG.ordinal();
+
+        final boolean exactFirst;
+        final boolean split;
+        final int oNegReserve;
+        private final int[][] order = new int[BLOOD_TYPES.length][];
+
+        Allocator(boolean exactFirst, boolean split, int oNegReserve) {
+            this.exactFirst = exactFirst;
+            this.split = split;
+            this.oNegReserve = oNegReserve;
+            for (int r = 0; r < order.length; r++) {
+                List<Integer> donorsFor = new ArrayList<>();
+                for (int d = 0; d < BLOOD_TYPES.length; d++) if ((DONORS_FOR[r] & 1 << d) != 0) donorsFor.add(d);
+                int recipient = r;
+                donorsFor.sort(Comparator.<Integer>comparingInt(d -> exactFirst && d == recipient ? 0 : 1)
+                        .thenComparingInt(d -> Integer.bitCount(RECIPIENTS_OF[d])));
+                order[r] = donorsFor.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        static Allocator parse(String spec) {
+            boolean exactFirst = true, split = true;
+            int reserve = 0;
+            for (String part : spec.split(",")) {
+                String p = part.trim();
+                if (p.isEmpty()) continue;
+                if (p.equals("exact-first")) exactFirst = true;
+                else if (p.equals("any-first")) exactFirst = false;
+                else if (p.equals("split")) split = true;
+                else if (p.equals("no-split")) split = false;
+                else if (p.startsWith("o-neg-reserve=")) reserve = Integer.parseInt(p.substring("o-neg-reserve=".length()));
+                else throw new IllegalArgumentException("Unknown allocation policy option: " + p);
+            }
+            return new Allocator(exactFirst, split, reserve);
+        }
+
+        /**
+         * Takes units for the recipient type out of stock and returns what was
+         * taken per donor type, or null (stock untouched) if it cannot be met.
+         */
+        int[] allocate(int recipient, int units, int[] stock) {
+            int[] take = new int[stock.length];
+            int need = units;
+            for (int d : order[recipient]) {
+                int usable = usable(d, recipient, stock[d]);
+                if (usable <= 0) continue;
+                if (split) {
+                    take[d] = Math.min(usable, need);
+                    need -= take[d];
+                } else if (usable >= need) {
+                    take[d] = need;
+                    need = 0;
+                }
+                if (need == 0) break;
+            }
+            if (need > 0) return null;
+            for (int d = 0; d < stock.length; d++) stock[d] -= take[d];
+            return take;
+        }
+
+        /** Units the recipient type could draw in total (split) or from its best single type. */
+        int usable(int recipient, int[] stock) {
+            int total = 0, best = 0;
+            for (int d : order[recipient]) {
+                int u = Math.max(0, usable(d, recipient, stock[d]));
+                total += u;
+                best = Math.max(best, u);
+            }
+            return split ? total : best;
+        }
+
+        private int usable(int donor, int recipient, int units) {
+            return donor == O_NEG && recipient != O_NEG ? units - oNegReserve : units;
+        }
+    }
+
+    /** One unit of blood on the shelf. */
+    static final class Unit {
+        final long id;
+        final BloodType type;
+        final LocalDate collected;
+        final LocalDate expires; // last usable day
+
+        Unit(long id, BloodType type, LocalDate collected, LocalDate expires) {
+            this.id = id; this.type = type; this.collected = collected; this.expires = expires;
+        }
+
+        boolean isExpired(LocalDate today) { return expires.isBefore(today); }
+    }
+
+    /**
+     * Unit-level stock: one heap per blood type, ordered by expiry (FEFO) or
+     * by collection date (FIFO), each guarded by its own monitor. Admission is
+     * lock-free: an AtomicIntegerArray counts the units per type not yet
+     * claimed, and an issue first claims its counts by compare-and-set (all
+     * types of a plan or none) and only then pulls that many units off the
+     * heaps. An expired unit met while pulling is discarded at the cost of one
+     * extra claim; if none is left the issue rolls back. Issued and expired
+     * totals are kept alongside, so the views never recount the heaps.
+     *
+     * Every mutation is bracketed by the active/writes counters, which lets
+     * snapshot() and snapshotUnits() retry until they have read everything
+     * with no mutation overlapping the read.
+     */
+    static final class Inventory {
+        private static final Comparator<Unit> FEFO = Comparator.comparing((Unit u) -> u.expires)
+                .thenComparing(u -> u.collected).thenComparingLong(u -> u.id);
+        private static final Comparator<Unit> FIFO = Comparator.comparing((Unit u) -> u.collected)
+                .thenComparing(u -> u.expires).thenComparingLong(u -> u.id);
+
+        /** Told about every unit that arrives or leaves, from whichever thread moved it. */
+        interface Listener {
+            void shelved(Unit u);
+            void removed(Unit u);
+        }
+
+        private final boolean fefo;
+        private final Listener listener;
+        private final List<PriorityQueue<Unit>> shelves = new ArrayList<>();
+        private final AtomicIntegerArray units = new AtomicIntegerArray(BloodType.ALL.length);
+        private final AtomicLongArray issued = new AtomicLongArray(BloodType.ALL.length);
+        private final AtomicLongArray expired = new AtomicLongArray(BloodType.ALL.length);
+        private final AtomicLong nextId = new AtomicLong(1);
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong writes = new AtomicLong();
+
+        Inventory(boolean fefo, Listener listener) {
+            this.fefo = fefo;
+            this.listener = listener;
+            for (int d = 0; d < BloodType.ALL.length; d++) shelves.add(new PriorityQueue<>(fefo ? FEFO : FIFO));
+        }
+
+        int get(BloodType t) { return units.get(t.ordinal()); }
+
+        long issued(BloodType t) { return issued.get(t.ordinal()); }
+
+        long expired(BloodType t) { return expired.get(t.ordinal()); }
+
+        /** Shelves n new units of t. */
+        void receive(BloodType t, int n, LocalDate collected, LocalDate expires) {
+            begin();
+            try {
+                PriorityQueue<Unit> shelf = shelves.get(t.ordinal());
+                List<Unit> arrived = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) arrived.add(new Unit(nextId.getAndIncrement(), t, collected, expires));
+                synchronized (shelf) {
+                    shelf.addAll(arrived);
+                }
+                units.addAndGet(t.ordinal(), n);
+                for (Unit u : arrived) listener.shelved(u);
+            } finally {
+                end();
+            }
+        }
+
+        /** Shelves a unit read back from disk, keeping its id. */
+        void restore(long id, BloodType t, LocalDate collected, LocalDate expires) {
+            begin();
+            try {
+                PriorityQueue<Unit> shelf = shelves.get(t.ordinal());
+                synchronized (shelf) {
+                    shelf.add(new Unit(id, t, collected, expires));
+                }
+                units.incrementAndGet(t.ordinal());
+                nextId.accumulateAndGet(id + 1, Math::max);
+            } finally {
+                end();
+            }
+        }
+
+        /** Issues n unexpired units of t, first out per the shelf order, or returns null. */
+        List<Unit> issue(BloodType t, int n, LocalDate today) {
+            int[] plan = new int[BloodType.ALL.length];
+            plan[t.ordinal()] = n;
+            return issue(plan, today);
+        }
+
+        /** Issues plan[d] unexpired units of every type d, or nothing at all. */
+        List<Unit> issue(int[] plan, LocalDate today) {
+            begin();
+            try {
+                for (int d = 0; d < plan.length; d++) {
+                    if (plan[d] == 0 || take(d, plan[d])) continue;
+                    for (int k = 0; k < d; k++) units.addAndGet(k, plan[k]);
+                    return null;
+                }
+                List<Unit> out = new ArrayList<>();
+                for (int d = 0; d < plan.length; d++) {
+                    if (plan[d] == 0 || pull(d, plan[d], today, out)) continue;
+                    // type d released its own claims; put back what earlier types pulled, release later claims
+                    for (Unit u : out) {
+                        PriorityQueue<Unit> shelf = shelves.get(u.type.ordinal());
+                        synchronized (shelf) {
+                            shelf.add(u);
+                        }
+                        units.incrementAndGet(u.type.ordinal());
+                    }
+                    for (int k = d + 1; k < plan.length; k++) units.addAndGet(k, plan[k]);
+                    return null;
+                }
+                for (int d = 0; d < plan.length; d++) issued.addAndGet(d, plan[d]);
+                for (Unit u : out) listener.removed(u);
+                return out;
+            } finally {
+                end();
+            }
+        }
+
+        /**
+         * Plans against the current counts and issues the plan, replanning if
+         * another thread got there first or expired units turned up. Returns
+         * units issued per type, or null.
+         */
+        int[] allocate(Allocator allocator, int recipient, int n, LocalDate today) {
+            while (true) {
+                int[] plan = allocator.allocate(recipient, n, current());
+                if (plan == null) return null;
+                if (issue(plan, today) != null) return plan;
+            }
+        }
+
+        /** Removes every expired unit that is not already claimed; returns how many. */
+        int sweep(LocalDate today) {
+            begin();
+            try {
+                int total = 0;
+                for (int d = 0; d < shelves.size(); d++) {
+                    PriorityQueue<Unit> shelf = shelves.get(d);
+                    int n = 0;
+                    synchronized (shelf) {
+                        if (fefo) {
+                            // expired units sit at the head: pop them in one batch
+                            while (!shelf.isEmpty() && shelf.peek().isExpired(today) && take(d, 1)) {
+                                listener.removed(shelf.poll());
+                                n++;
+                            }
+                        } else {
+                            for (Iterator<Unit> it = shelf.iterator(); it.hasNext(); ) {
+                                Unit u = it.next();
+                                if (u.isExpired(today) && take(d, 1)) {
+                                    it.remove();
+                                    listener.removed(u);
+                                    n++;
+                                }
+                            }
+                        }
+                    }
+                    expired.addAndGet(d, n);
+                    total += n;
+                }
+                return total;
+            } finally {
+                end();
+            }
+        }
+
+        /** Bit d set when type d has stock. */
+        int nonEmptyMask() {
+            int mask = 0;
+            for (int d = 0; d < units.length(); d++) if (units.get(d) > 0) mask |= 1 << d;
+            return mask;
+        }
+
+        /** Counts read one by one; fine for planning, not for persisting. */
+        int[] current() {
+            int[] copy = new int[units.length()];
+            for (int d = 0; d < copy.length; d++) copy[d] = units.get(d);
+            return copy;
+        }
+
+        /** Counts as of a single instant between mutations. */
+        int[] snapshot() {
+            while (true) {
+                long before = writes.get();
+                if (active.get() == 0) {
+                    int[] copy = current();
+                    if (active.get() == 0 && writes.get() == before) return copy;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        /** Every unit on the shelves as of a single instant between mutations. */
+        List<Unit> snapshotUnits() {
+            while (true) {
+                long before = writes.get();
+                if (active.get() == 0) {
+                    List<Unit> copy = new ArrayList<>();
+                    for (PriorityQueue<Unit> shelf : shelves) {
+                        synchronized (shelf) {
+                            copy.addAll(shelf);
+                        }
+                    }
+                    if (active.get() == 0 && writes.get() == before) return copy;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        /** Visits the units on one shelf, holding its lock; the action must not touch the inventory. */
+        void forEachUnit(BloodType t, Consumer<Unit> action) {
+            PriorityQueue<Unit> shelf = shelves.get(t.ordinal());
+            synchronized (shelf) {
+                for (Unit u : shelf) action.accept(u);
+            }
+        }
+
+        void clear() {
+            begin();
+            try {
+                for (int d = 0; d < units.length(); d++) {
+                    PriorityQueue<Unit> shelf = shelves.get(d);
+                    synchronized (shelf) {
+                        shelf.clear();
+                    }
+                    units.set(d, 0);
+                }
+            } finally {
+                end();
+            }
+        }
+
+        /** Pulls n claimed units of type d into out; on failure puts them back and releases the claims. */
+        private boolean pull(int d, int n, LocalDate today, List<Unit> out) {
+            PriorityQueue<Unit> shelf = shelves.get(d);
+            List<Unit> fresh = new ArrayList<>(n);
+            int claims = n;
+            synchronized (shelf) {
+                while (fresh.size() < claims) {
+                    Unit u = shelf.poll();
+                    if (!u.isExpired(today)) {
+                        fresh.add(u);
+                        continue;
+                    }
+                    expired.incrementAndGet(d);
+                    listener.removed(u);
+                    claims--; // the discarded unit used up one claim
+                    if (take(d, 1)) claims++;
+                    else break;
+                }
+                if (fresh.size() == n) {
+                    out.addAll(fresh);
+                    return true;
+                }
+                shelf.addAll(fresh);
+            }
+            units.addAndGet(d, claims);
+            return false;
+        }
+
+        private boolean take(int d, int n) {
+            while (true) {
+                int have = units.get(d);
+                if (have < n) return false;
+                if (units.compareAndSet(d, have, have - n)) return true;
+            }
+        }
+
+        private void begin() { active.incrementAndGet(); }
+
+        private void end() {
+            writes.incrementAndGet();
+            active.decrementAndGet();
+        }
+    }
+
+    private static String describe(int[] perType) {
+        StringJoiner sj = new StringJoiner(", ");
+        for (int d = 0; d < perType.length; d++) if (perType[d] > 0) sj.add(perType[d] + " x " + BLOOD_TYPES[d]);
+        return sj.toString();
+    }
+
     // ---------- Helpers ----------
     private String chooseBloodType() {
         println("Choose blood type:");
@@ -1,9 +1,25 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.*;
 import javax.swing.*;
 import javax.swing.border.*;
@@ -466,22 +482,120 @@ public class Calculator extends JFrame {
         } catch (Exception ex) {
             display.setText("Error");
         }
+        display.setToolTipText(EXPRESSION_CACHE.stats());
     }
 
     private double evaluateExpression(String expr) throws Exception {
-        List<Token> tokens = tokenize(expr);
-        List<Token> rpn = shuntingYard(tokens);
-        return evaluateRPN(rpn);
+        return evaluate(expr, degreeMode);
     }
 
-    // Tokenization (left as originally provided)
+    // Window-independent form of evaluateExpression (shared cache, explicit angle mode)
+    static double evaluate(String expr, boolean degreeMode) throws Exception {
+        return EXPRESSION_CACHE.compile(expr).program.evaluate(degreeMode);
+    }
+
+    // Shared by every window: parsed programs don't depend on degree/radian mode
+    private static final ExpressionCache EXPRESSION_CACHE = new ExpressionCache(4096);
+
+    // Single-pass lexer: classifies tokens, parses number literals once, and inserts
+    // implicit '*' (2(3), (1)(2), 2pi, 2x) and unary minus as it goes.
+    static List<Token> tokenize(String s) throws Exception {
+        List<Token> out = new ArrayList<>(Math.max(8, s.length() / 2));
+        final int n = s.length();
+        boolean prevEndsOperand = false;   // number, ')', variable or postfix '%'
+        boolean prevImplicitLeft = false;  // operand that can be followed by implicit '*'
+        int i = 0;
+        while (i < n) {
+            char ch = s.charAt(i);
+            if (Character.isWhitespace(ch)) { i++; continue; }
+
+            if (isDigit(ch) || (ch == '.' && i + 1 < n && isDigit(s.charAt(i + 1)))) {
+                int start = i;
+                while (i < n && isDigit(s.charAt(i))) i++;
+                if (i + 1 < n && s.charAt(i) == '.' && isDigit(s.charAt(i + 1))) {
+                    i++;
+                    while (i < n && isDigit(s.charAt(i))) i++;
+                }
+                // 2(3), 2pi, 2x and )( multiply implicitly, but a number never does: "2 3" and "1.2.3" are errors
+                if (prevEndsOperand) throw new Exception("Missing operator before " + s.substring(start, i));
+                out.add(new Token(Double.parseDouble(s.substring(start, i))));
+                prevEndsOperand = prevImplicitLeft = true;
+            } else if (isIdentStart(ch) || ch == '\u03C0') {
+                int start = i++;
+                if (ch != '\u03C0') while (i < n && isIdentPart(s.charAt(i))) i++;
+                String id = s.substring(start, i);
+                if (id.equalsIgnoreCase("mod")) {
+                    out.add(new Token(TokenType.OPERATOR, "mod"));
+                    prevEndsOperand = prevImplicitLeft = false;
+                    continue;
+                }
+                if (prevImplicitLeft) out.add(Token.MUL);
+                if (id.equalsIgnoreCase("pi") || ch == '\u03C0') {
+                    out.add(new Token(Math.PI));
+                    prevEndsOperand = prevImplicitLeft = true;
+                } else if (id.equalsIgnoreCase("e")) {
+                    out.add(new Token(Math.E));
+                    prevEndsOperand = prevImplicitLeft = true;
+                } else {
+                    out.add(new Token(TokenType.FUNCTION_OR_VAR, id));
+                    // a name directly followed by '(' is a call, not an operand
+                    boolean call = nextNonSpace(s, i) == '(';
+                    prevEndsOperand = prevImplicitLeft = !call;
+                }
+            } else {
+                switch (ch) {
+                    case '(':
+                        if (prevImplicitLeft) out.add(Token.MUL);
+                        out.add(Token.LPAREN);
+                        prevEndsOperand = prevImplicitLeft = false;
+                        break;
+                    case ')':
+                        out.add(Token.RPAREN);
+                        prevEndsOperand = prevImplicitLeft = true;
+                        break;
+                    case '-':
+                        out.add(prevEndsOperand ? Token.MINUS : Token.NEG);
+                        prevEndsOperand = prevImplicitLeft = false;
+                        break;
+                    case '+':
+                        if (prevEndsOperand) out.add(Token.PLUS); // unary plus is a no-op
+                        prevEndsOperand = prevImplicitLeft = false;
+                        break;
+                    case '*': case '/': case '^':
+                        out.add(new Token(TokenType.OPERATOR, String.valueOf(ch)));
+                        prevEndsOperand = prevImplicitLeft = false;
+                        break;
+                    case '%':
+                        out.add(Token.PERCENT);
+                        prevEndsOperand = true;
+                        prevImplicitLeft = false;
+                        break;
+                    default:
+                        throw new Exception("Unexpected token near: " + s.substring(Math.max(0, i - 10), Math.min(n, i + 10)));
+                }
+                i++;
+            }
+        }
+        return out;
+    }
+
+    private static boolean isDigit(char ch) { return ch >= '0' && ch <= '9'; }
+    private static boolean isIdentStart(char ch) { return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || ch == '_'; }
+    private static boolean isIdentPart(char ch) { return isIdentStart(ch) || isDigit(ch); }
+
+    private static char nextNonSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i < s.length() ? s.charAt(i) : 0;
+    }
+
+    // Previous regex tokenizer, kept as the baseline for the lexer benchmark.
     private static final Pattern TOKEN_PAT =
-            Pattern.compile("\\s*(?:([0-9]*\\.?[0-9]+)|([a-zA-Z_][a-zA-Z0-9_]*)|([()+\\-*/^%])|(.) )");
+            Pattern.compile("\\s*([0-9]*\\.?[0-9]+|[a-zA-Z_][a-zA-Z0-9_]*|[()+\\-*/^%]|\\S)");
 
-    private List<Token> tokenize(String s) throws Exception {
+    static List<Token> legacyTokenize(String s) throws Exception {
         List<Token> out = new ArrayList<>();
         // Simplified tolerant tokenization using iterative scan
-        Matcher m = Pattern.compile("\\s*([0-9]*\\.?[0-9]+|[a-zA-Z_][a-zA-Z0-9_]*|[()+\\-*/^%]|\\S)").matcher(s);
+        Matcher m = TOKEN_PAT.matcher(s);
         int pos = 0;
         while (m.find()) {
             pos = m.end();
@@ -529,13 +643,13 @@ public class Calculator extends JFrame {
     }
 
     // Shunting-yard to produce RPN
-    private List<Token> shuntingYard(List<Token> tokens) throws Exception {
+    private static List<Token> shuntingYard(List<Token> tokens) throws Exception {
         List<Token> output = new ArrayList<>();
         Deque<Token> stack = new ArrayDeque<>();
 
         for (int i = 0; i < tokens.size(); i++) {
             Token t = tokens.get(i);
-            if (t.type == TokenType.NUMBER) {
+            if (t.type == TokenType.NUMBER || t.type == TokenType.VARIABLE) {
                 output.add(t);
             } else if (t.type == TokenType.FUNCTION_OR_VAR) {
                 // could be function if next token is '('
@@ -543,8 +657,8 @@ public class Calculator extends JFrame {
                 if (next != null && next.type == TokenType.LEFT_PAREN) {
                     stack.push(t); // function
                 } else {
-                    // variable (unsupported except constants handled earlier)
-                    output.add(t);
+                    // variable, bound by name at evaluation time
+                    output.add(new Token(TokenType.VARIABLE, t.value));
                 }
             } else if (t.type == TokenType.OPERATOR) {
                 String op1 = t.value;
@@ -578,102 +692,81 @@ public class Calculator extends JFrame {
         return output;
     }
 
-    // Evaluate RPN
-    private double evaluateRPN(List<Token> rpn) throws Exception {
-        Deque<Double> st = new ArrayDeque<>();
-        for (Token t : rpn) {
-            if (t.type == TokenType.NUMBER) {
-                st.push(Double.parseDouble(t.value));
-            } else if (t.type == TokenType.OPERATOR) {
-                String op = t.value;
-                if (op.equals("mod")) op = "%";
-                if (op.equals("%")) {
-                    if (st.isEmpty()) throw new Exception("Missing operand for %");
-                    double a = st.pop();
-                    st.push(a / 100.0);
-                    continue;
-                }
-                if (isBinaryOperator(op)) {
-                    if (st.size() < 2) throw new Exception("Not enough operands for " + op);
-                    double b = st.pop();
-                    double a = st.pop();
-                    st.push(applyBinary(op, a, b));
-                } else throw new Exception("Unknown operator: " + op);
-            } else if (t.type == TokenType.FUNCTION_OR_VAR) {
-                String fn = t.value.toLowerCase();
-                if (st.isEmpty()) throw new Exception("Missing argument for function " + fn);
-                double a = st.pop();
-                st.push(applyFunction(fn, a));
-            } else {
-                throw new Exception("Unexpected RPN token: " + t);
-            }
-        }
-        if (st.size() != 1) throw new Exception("Parse error (stack size != 1)");
-        return st.pop();
-    }
-
-    private boolean isBinaryOperator(String op) {
-        return "+".equals(op) || "-".equals(op) || "*".equals(op) || "/".equals(op) || "^".equals(op) || "%".equals(op) || "mod".equals(op);
-    }
-
-    private double applyBinary(String op, double a, double b) throws Exception {
+    // Operator/function semantics shared by every evaluator (see Program)
+    static double applyBinary(int op, double a, double b) throws Exception {
         switch (op) {
-            case "+": return a + b;
-            case "-": return a - b;
-            case "*": return a * b;
-            case "/":
+            case Program.ADD: return a + b;
+            case Program.SUB: return a - b;
+            case Program.MUL: return a * b;
+            case Program.DIV:
                 if (b == 0) throw new Exception("Division by zero");
                 return a / b;
-            case "^": return Math.pow(a, b);
-            case "%": return a % b;
+            case Program.POW: return Math.pow(a, b);
+            case Program.MOD: return a % b;
             default: throw new Exception("Unknown binary op " + op);
         }
     }
 
-    private double applyFunction(String fn, double a) throws Exception {
-        switch (fn) {
-            case "sin": return Math.sin(toRadiansIfNeeded(a));
-            case "cos": return Math.cos(toRadiansIfNeeded(a));
-            case "tan": return Math.tan(toRadiansIfNeeded(a));
-            case "asin": return fromRadiansIfNeeded(Math.asin(a));
-            case "acos": return fromRadiansIfNeeded(Math.acos(a));
-            case "atan": return fromRadiansIfNeeded(Math.atan(a));
-            case "sqrt": return Math.sqrt(a);
-            case "ln": return Math.log(a);
-            case "log": return Math.log10(a);
-            case "abs": return Math.abs(a);
-            case "neg": return -a;
-            default: throw new Exception("Unknown function: " + fn);
-        }
+    // Argument orders that suit generated bytecode (operands already on the stack); see KernelCompiler
+    static double applyBinaryOp(double a, double b, int op) throws Exception {
+        return applyBinary(op, a, b);
     }
 
-    private double toRadiansIfNeeded(double x) {
-        return degreeMode ? Math.toRadians(x) : x;
+    static double applyFunctionOp(double a, int op, boolean degreeMode) throws Exception {
+        return applyFunction(op, a, degreeMode);
     }
-    private double fromRadiansIfNeeded(double x) {
-        return degreeMode ? Math.toDegrees(x) : x;
+
+    static double applyFunction(int op, double a, boolean degreeMode) throws Exception {
+        switch (op) {
+            case Program.PCT: return a / 100.0;
+            case Program.NEG: return -a;
+            case Program.SIN: return Math.sin(degreeMode ? Math.toRadians(a) : a);
+            case Program.COS: return Math.cos(degreeMode ? Math.toRadians(a) : a);
+            case Program.TAN: return Math.tan(degreeMode ? Math.toRadians(a) : a);
+            case Program.ASIN: return degreeMode ? Math.toDegrees(Math.asin(a)) : Math.asin(a);
+            case Program.ACOS: return degreeMode ? Math.toDegrees(Math.acos(a)) : Math.acos(a);
+            case Program.ATAN: return degreeMode ? Math.toDegrees(Math.atan(a)) : Math.atan(a);
+            case Program.SQRT: return Math.sqrt(a);
+            case Program.LN: return Math.log(a);
+            case Program.LOG: return Math.log10(a);
+            case Program.ABS: return Math.abs(a);
+            default: throw new Exception("Unknown function op " + op);
+        }
     }
 
-    private int precedence(String op) {
+    private static int precedence(String op) {
         switch (op) {
             case "+": case "-": return 2;
             case "*": case "/": case "%": case "mod": return 3;
-            case "^": return 4;
+            case "^": case "neg": return 4;
         }
         return 0;
     }
 
-    private boolean isLeftAssoc(String op) {
-        // ^ is right-assoc
-        return !("^".equals(op));
+    private static boolean isLeftAssoc(String op) {
+        // ^ and prefix neg are right-assoc
+        return !("^".equals(op) || "neg".equals(op));
     }
 
     // Token classes
-    enum TokenType { NUMBER, OPERATOR, LEFT_PAREN, RIGHT_PAREN, FUNCTION_OR_VAR }
+    enum TokenType { NUMBER, OPERATOR, LEFT_PAREN, RIGHT_PAREN, FUNCTION_OR_VAR, VARIABLE }
     static class Token {
+        static final Token MUL = new Token(TokenType.OPERATOR, "*");
+        static final Token PLUS = new Token(TokenType.OPERATOR, "+");
+        static final Token MINUS = new Token(TokenType.OPERATOR, "-");
+        static final Token NEG = new Token(TokenType.OPERATOR, "neg");
+        static final Token PERCENT = new Token(TokenType.OPERATOR, "%");
+        static final Token LPAREN = new Token(TokenType.LEFT_PAREN, "(");
+        static final Token RPAREN = new Token(TokenType.RIGHT_PAREN, ")");
+
         final TokenType type;
         final String value;
-        Token(TokenType t, String v) { type = t; value = v; }
+        final double number; // parsed literal for NUMBER tokens
+        Token(TokenType t, String v) {
+            type = t; value = v;
+            number = t == TokenType.NUMBER ? Double.parseDouble(v) : Double.NaN;
+        }
+        Token(double n) { type = TokenType.NUMBER; value = String.valueOf(n); number = n; }
         boolean isNumber() { return type == TokenType.NUMBER; }
         boolean isLeftParen() { return type == TokenType.LEFT_PAREN; }
         boolean isRightParen() { return type == TokenType.RIGHT_PAREN; }
@@ -682,6 +775,635 @@ public class Calculator extends JFrame {
         @Override public String toString() { return type + ":" + value; }
     }
 
+    /* ========== Compiled expressions + LRU cache ========== */
+
+    // Immutable result of tokenize + shuntingYard + Optimizer; safe to share between windows/threads
+    static final class CompiledExpression {
+        final String source;
+        final List<Token> rpn;      // as parsed, before optimization
+        final Program program;      // optimized
+
+        CompiledExpression(String source, List<Token> rpn) throws Exception {
+            this.source = source;
+            this.rpn = Collections.unmodifiableList(new ArrayList<>(rpn));
+            this.program = Program.lower(Optimizer.optimize(this.rpn));
+        }
+
+        static CompiledExpression parse(String source) throws Exception {
+            return new CompiledExpression(source, shuntingYard(tokenize(source)));
+        }
+
+        int opCountBefore() { return rpn.size(); }
+        int opCountAfter() { return program.opCount(); }
+
+        @Override public String toString() {
+            return source + " => " + program + "  (ops " + opCountBefore() + " -> " + opCountAfter() + ")";
+        }
+    }
+
+    /*
+     * RPN -> RPN simplification run before lowering. Builds an expression tree bottom-up,
+     * folding any node whose operands are all constants, then applies identities that
+     * are exact in IEEE arithmetic: x*1, 1*x, x/1, x^1, x-(+0), x+(-0), (-0)+x, neg(neg x).
+     * The zero identities match the sign bit: x+0 would turn a -0.0 operand into +0.0,
+     * and so would x-(-0), so those are left for the evaluator.
+     * Folding never changes errors: a constant op that throws (e.g. 1/0) is left in
+     * place so evaluation reports it as before. sin/cos/tan and their inverses are not
+     * folded because a compiled program is shared between degree and radian mode.
+     */
+    static final class Optimizer {
+        private static final class Node {
+            final Token tok;   // NUMBER, VARIABLE, OPERATOR or function token
+            final int op;      // Program opcode; CONST/LOAD for leaves
+            final Node a, b;   // operands (b only for binary ops)
+
+            Node(Token tok, int op, Node a, Node b) { this.tok = tok; this.op = op; this.a = a; this.b = b; }
+
+            boolean isConst() { return op == Program.CONST; }
+            boolean isConst(double v) { return op == Program.CONST && tok.number == v; }
+            boolean isZero(boolean negative) {
+                return op == Program.CONST && Double.doubleToRawLongBits(tok.number) == Double.doubleToRawLongBits(negative ? -0.0 : 0.0);
+            }
+        }
+
+        static List<Token> optimize(List<Token> rpn) throws Exception {
+            Deque<Node> st = new ArrayDeque<>();
+            for (Token t : rpn) {
+                if (t.type == TokenType.NUMBER) { st.push(new Node(t, Program.CONST, null, null)); continue; }
+                if (t.type == TokenType.VARIABLE) { st.push(new Node(t, Program.LOAD, null, null)); continue; }
+                int op = t.type == TokenType.OPERATOR ? Program.operatorCode(t.value) : Program.functionCode(t.value.toLowerCase());
+                int arity = Program.arity(op);
+                if (st.size() < arity) {
+                    throw new Exception(arity == 2 ? "Not enough operands for " + t.value : "Missing argument for " + t.value);
+                }
+                Node b = arity == 2 ? st.pop() : null;
+                Node a = st.pop();
+                st.push(simplify(new Node(t, op, a, b)));
+            }
+            if (st.size() != 1) throw new Exception("Parse error (stack size != 1)");
+            return emit(st.pop());
+        }
+
+        private static Node simplify(Node n) {
+            int op = n.op;
+            boolean binary = n.b != null;
+            if (n.a.isConst() && (!binary || n.b.isConst()) && !isAngleFunction(op)) {
+                try {
+                    double v = binary ? applyBinary(op, n.a.tok.number, n.b.tok.number)
+                                      : applyFunction(op, n.a.tok.number, true);
+                    return new Node(new Token(v), Program.CONST, null, null);
+                } catch (Exception keepForRuntime) {
+                    return n;
+                }
+            }
+            switch (op) {
+                case Program.MUL:
+                    if (n.b.isConst(1)) return n.a;
+                    if (n.a.isConst(1)) return n.b;
+                    break;
+                case Program.DIV:
+                case Program.POW:
+                    if (n.b.isConst(1)) return n.a;
+                    break;
+                case Program.ADD:
+                    if (n.b.isZero(true)) return n.a;
+                    if (n.a.isZero(true)) return n.b;
+                    break;
+                case Program.SUB:
+                    if (n.b.isZero(false)) return n.a;
+                    break;
+                case Program.NEG:
+                    if (n.a.op == Program.NEG) return n.a.a;
+                    break;
+            }
+            return n;
+        }
+
+        private static boolean isAngleFunction(int op) {
+            return op >= Program.SIN && op <= Program.ATAN;
+        }
+
+        // Post-order walk without recursion (10k-token expressions make deep trees)
+        private static List<Token> emit(Node root) {
+            Deque<Node> pending = new ArrayDeque<>();
+            Deque<Node> order = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node n = pending.pop();
+                order.push(n);
+                if (n.a != null) pending.push(n.a);
+                if (n.b != null) pending.push(n.b);
+            }
+            List<Token> out = new ArrayList<>(order.size());
+            while (!order.isEmpty()) out.add(order.pop().tok);
+            return out;
+        }
+    }
+
+    /*
+     * RPN lowered to a flat opcode array. Each int in code is an opcode in the low
+     * byte; CONST carries its constant-pool index and LOAD its variable slot in the
+     * upper bits. Operand counts are checked once in lower(), so evaluate() only does
+     * arithmetic on a double[] stack and allocates nothing. evaluateColumns() runs the
+     * same code one opcode at a time over blocks of rows.
+     */
+    static final class Program {
+        static final int CONST = 0;
+        static final int ADD = 1, SUB = 2, MUL = 3, DIV = 4, POW = 5, MOD = 6;
+        static final int PCT = 7, NEG = 8, SIN = 9, COS = 10, TAN = 11, ASIN = 12, ACOS = 13, ATAN = 14;
+        static final int SQRT = 15, LN = 16, LOG = 17, ABS = 18;
+        static final int LOAD = 19;
+
+        // Rows per block in evaluateColumns: big enough to amortize dispatch, small enough for L1/L2
+        static final int BLOCK = 1024;
+
+        private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[16]);
+
+        // Scalar evaluations before a program is compiled to bytecode; <= 0 disables the tier
+        static final int JIT_THRESHOLD = Integer.getInteger("calculator.jit.threshold", 10_000);
+
+        final int[] code;
+        final double[] constants;
+        final String[] variables; // slot -> name, in order of first use
+        final int maxStack;
+
+        // Tiering state: the only mutable part of a Program, and invisible in its results
+        private int calls;                    // racy on purpose; only needs to get roughly past the threshold
+        private volatile Kernel kernel;
+        private volatile boolean jitTried;
+
+        private Program(int[] code, double[] constants, String[] variables, int maxStack) {
+            this.code = code;
+            this.constants = constants;
+            this.variables = variables;
+            this.maxStack = maxStack;
+        }
+
+        static Program lower(List<Token> rpn) throws Exception {
+            int[] code = new int[rpn.size()];
+            double[] pool = new double[4];
+            int poolSize = 0;
+            List<String> vars = new ArrayList<>();
+            int depth = 0, maxDepth = 0;
+            for (int i = 0; i < code.length; i++) {
+                Token t = rpn.get(i);
+                int op;
+                if (t.type == TokenType.NUMBER) {
+                    double v = t.number;
+                    int idx = 0;
+                    while (idx < poolSize && Double.doubleToLongBits(pool[idx]) != Double.doubleToLongBits(v)) idx++;
+                    if (idx == poolSize) {
+                        if (poolSize == pool.length) pool = Arrays.copyOf(pool, poolSize * 2);
+                        pool[poolSize++] = v;
+                    }
+                    code[i] = CONST | (idx << 8);
+                    maxDepth = Math.max(maxDepth, ++depth);
+                    continue;
+                } else if (t.type == TokenType.VARIABLE) {
+                    int slot = vars.indexOf(t.value);
+                    if (slot < 0) { slot = vars.size(); vars.add(t.value); }
+                    code[i] = LOAD | (slot << 8);
+                    maxDepth = Math.max(maxDepth, ++depth);
+                    continue;
+                } else if (t.type == TokenType.OPERATOR) {
+                    op = operatorCode(t.value);
+                } else if (t.type == TokenType.FUNCTION_OR_VAR) {
+                    op = functionCode(t.value.toLowerCase());
+                } else {
+                    throw new Exception("Unexpected RPN token: " + t);
+                }
+                int arity = arity(op);
+                if (depth < arity) {
+                    throw new Exception(arity == 2 ? "Not enough operands for " + t.value : "Missing argument for " + t.value);
+                }
+                depth -= arity - 1;
+                code[i] = op;
+            }
+            if (depth != 1) throw new Exception("Parse error (stack size != 1)");
+            return new Program(code, Arrays.copyOf(pool, poolSize), vars.toArray(new String[0]), maxDepth);
+        }
+
+        static int operatorCode(String op) throws Exception {
+            switch (op) {
+                case "+": return ADD;
+                case "-": return SUB;
+                case "*": return MUL;
+                case "/": return DIV;
+                case "^": return POW;
+                case "mod": return MOD;
+                case "%": return PCT; // postfix percent
+                case "neg": return NEG; // prefix minus
+                default: throw new Exception("Unknown operator: " + op);
+            }
+        }
+
+        static int functionCode(String fn) throws Exception {
+            switch (fn) {
+                case "sin": return SIN;
+                case "cos": return COS;
+                case "tan": return TAN;
+                case "asin": return ASIN;
+                case "acos": return ACOS;
+                case "atan": return ATAN;
+                case "sqrt": return SQRT;
+                case "ln": return LN;
+                case "log": return LOG;
+                case "abs": return ABS;
+                case "neg": return NEG;
+                default: throw new Exception("Unknown function: " + fn);
+            }
+        }
+
+        static int arity(int op) {
+            if (op == CONST || op == LOAD) return 0;
+            return op <= MOD ? 2 : 1;
+        }
+
+        private static final double[] NO_VARS = new double[0];
+
+        int slotOf(String name) {
+            for (int i = 0; i < variables.length; i++) if (variables[i].equals(name)) return i;
+            return -1;
+        }
+
+        // Values for variables() in slot order; names the program doesn't use are ignored
+        double[] bind(Map<String, Double> values) throws Exception {
+            double[] out = new double[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                Double v = values.get(variables[i]);
+                if (v == null) throw new Exception("Unknown variable: " + variables[i]);
+                out[i] = v;
+            }
+            return out;
+        }
+
+        double evaluate(boolean degreeMode) throws Exception {
+            if (variables.length > 0) throw new Exception("Unknown variable: " + variables[0]);
+            return evaluate(degreeMode, NO_VARS);
+        }
+
+        // Uses the compiled kernel once the program is hot, otherwise the interpreter
+        // with a per-thread scratch stack; see evaluate(boolean, double[], double[]) to supply your own
+        double evaluate(boolean degreeMode, double[] vars) throws Exception {
+            Kernel k = kernel;
+            if (k != null) return k.eval(vars, degreeMode);
+            if (JIT_THRESHOLD > 0 && !jitTried && ++calls >= JIT_THRESHOLD) {
+                k = compileKernel();
+                if (k != null) return k.eval(vars, degreeMode);
+            }
+            double[] stack = SCRATCH.get();
+            if (stack.length < maxStack) {
+                stack = new double[Math.max(maxStack, stack.length * 2)];
+                SCRATCH.set(stack);
+            }
+            return evaluate(degreeMode, vars, stack);
+        }
+
+        double evaluate(boolean degreeMode, double[] vars, double[] stack) throws Exception {
+            final int[] code = this.code;
+            int sp = 0;
+            for (int i = 0; i < code.length; i++) {
+                int ins = code[i];
+                int op = ins & 0xFF;
+                if (op == CONST) {
+                    stack[sp++] = constants[ins >>> 8];
+                } else if (op == LOAD) {
+                    stack[sp++] = vars[ins >>> 8];
+                } else if (op <= MOD) {
+                    double b = stack[--sp];
+                    switch (op) {
+                        case ADD: stack[sp - 1] += b; break;
+                        case SUB: stack[sp - 1] -= b; break;
+                        case MUL: stack[sp - 1] *= b; break;
+                        default: stack[sp - 1] = applyBinary(op, stack[sp - 1], b);
+                    }
+                } else if (op == NEG) {
+                    stack[sp - 1] = -stack[sp - 1];
+                } else {
+                    stack[sp - 1] = applyFunction(op, stack[sp - 1], degreeMode);
+                }
+            }
+            return stack[0];
+        }
+
+        /*
+         * Batch form: columns[slot] holds the values of variables[slot] for every row,
+         * results go to out[0..rows). Each opcode runs as one tight loop over a block of
+         * rows, so dispatch cost is paid per block rather than per row.
+         */
+        void evaluateColumns(double[][] columns, int rows, double[] out, boolean degreeMode) throws Exception {
+            if (columns.length < variables.length) throw new Exception("Expected " + variables.length + " columns, got " + columns.length);
+            for (int v = 0; v < variables.length; v++) {
+                if (columns[v].length < rows) throw new Exception("Column " + variables[v] + " has fewer than " + rows + " rows");
+            }
+            if (out.length < rows) throw new Exception("Output has fewer than " + rows + " rows");
+            final int[] code = this.code;
+            double[][] st = new double[maxStack][Math.min(BLOCK, Math.max(rows, 1))];
+            for (int base = 0; base < rows; base += BLOCK) {
+                int len = Math.min(BLOCK, rows - base);
+                int sp = 0;
+                for (int ins : code) {
+                    int op = ins & 0xFF;
+                    if (op == CONST) {
+                        Arrays.fill(st[sp++], 0, len, constants[ins >>> 8]);
+                        continue;
+                    }
+                    if (op == LOAD) {
+                        System.arraycopy(columns[ins >>> 8], base, st[sp++], 0, len);
+                        continue;
+                    }
+                    if (op <= MOD) {
+                        double[] a = st[sp - 2], b = st[--sp];
+                        switch (op) {
+                            case ADD: for (int r = 0; r < len; r++) a[r] += b[r]; break;
+                            case SUB: for (int r = 0; r < len; r++) a[r] -= b[r]; break;
+                            case MUL: for (int r = 0; r < len; r++) a[r] *= b[r]; break;
+                            case DIV:
+                                for (int r = 0; r < len; r++) {
+                                    if (b[r] == 0) throw new Exception("Division by zero (row " + (base + r) + ")");
+                                    a[r] /= b[r];
+                                }
+                                break;
+                            default: for (int r = 0; r < len; r++) a[r] = applyBinary(op, a[r], b[r]);
+                        }
+                        continue;
+                    }
+                    double[] a = st[sp - 1];
+                    switch (op) {
+                        case NEG: for (int r = 0; r < len; r++) a[r] = -a[r]; break;
+                        case SQRT: for (int r = 0; r < len; r++) a[r] = Math.sqrt(a[r]); break;
+                        case ABS: for (int r = 0; r < len; r++) a[r] = Math.abs(a[r]); break;
+                        default: for (int r = 0; r < len; r++) a[r] = applyFunction(op, a[r], degreeMode);
+                    }
+                }
+                System.arraycopy(st[0], 0, out, base, len);
+            }
+        }
+
+        // Named-column convenience; every variable must have a column
+        double[] evaluateColumns(Map<String, double[]> columns, int rows, boolean degreeMode) throws Exception {
+            double[][] cols = new double[variables.length][];
+            for (int v = 0; v < variables.length; v++) {
+                cols[v] = columns.get(variables[v]);
+                if (cols[v] == null) throw new Exception("Unknown variable: " + variables[v]);
+            }
+            double[] out = new double[rows];
+            evaluateColumns(cols, rows, out, degreeMode);
+            return out;
+        }
+
+        int opCount() { return code.length; }
+
+        boolean isCompiled() { return kernel != null; }
+
+        // Generates the bytecode tier now; null if this program can't be compiled (the interpreter keeps working)
+        synchronized Kernel compileKernel() {
+            if (!jitTried) {
+                jitTried = true;
+                kernel = KernelCompiler.compile(this);
+            }
+            return kernel;
+        }
+
+        @Override public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int ins : code) {
+                if (sb.length() > 0) sb.append(' ');
+                int op = ins & 0xFF;
+                if (op == CONST) sb.append(shortName(constants[ins >>> 8]));
+                else if (op == LOAD) sb.append(variables[ins >>> 8]);
+                else sb.append(OP_NAMES[op]);
+            }
+            return sb.toString();
+        }
+
+        private static final String[] OP_NAMES = {
+            "const", "+", "-", "*", "/", "^", "mod", "%", "neg",
+            "sin", "cos", "tan", "asin", "acos", "atan", "sqrt", "ln", "log", "abs"
+        };
+
+        private static String shortName(double v) {
+            return v == (long) v ? Long.toString((long) v) : Double.toString(v);
+        }
+    }
+
+    // A Program compiled to a hidden class; see KernelCompiler
+    interface Kernel {
+        double eval(double[] vars, boolean degreeMode) throws Exception;
+    }
+
+    /*
+     * Emits a class file with one straight-line method per Program and loads it with
+     * Lookup.defineHiddenClass (JDK 15+, no class-file library needed). +, -, *, neg are
+     * plain dadd/dsub/dmul/dneg, exactly what the interpreter does; every other op calls
+     * applyBinary/applyFunction through the *Op helpers, so results are bit-identical
+     * to Program.evaluate. With no branches the method needs no StackMapTable.
+     */
+    static final class KernelCompiler {
+        private static final String KERNEL = Kernel.class.getName().replace('.', '/');
+        private static final String OWNER = Calculator.class.getName().replace('.', '/');
+
+        // Constant-pool tags
+        private static final int UTF8 = 1, DOUBLE = 6, CLASS = 7, METHODREF = 10, NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream pool = new DataOutputStream(poolBytes);
+        private final Map<String, Integer> poolIndex = new HashMap<>();
+        private int poolCount = 1;
+
+        static Kernel compile(Program p) {
+            try {
+                byte[] bytes = new KernelCompiler().classBytes(p);
+                if (bytes == null) return null;
+                MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(bytes, true);
+                return (Kernel) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        private byte[] classBytes(Program p) throws IOException {
+            int thisClass = classRef("CalculatorKernel");
+            int objectClass = classRef("java/lang/Object");
+            int kernelClass = classRef(KERNEL);
+            int objectInit = methodRef(objectClass, "<init>", "()V");
+            int binaryOp = methodRef(classRef(OWNER), "applyBinaryOp", "(DDI)D");
+            int functionOp = methodRef(classRef(OWNER), "applyFunctionOp", "(DIZ)D");
+            int initName = utf8("<init>"), initDesc = utf8("()V");
+            int evalName = utf8("eval"), evalDesc = utf8("([DZ)D");
+            int codeAttr = utf8("Code");
+
+            ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+            DataOutputStream c = new DataOutputStream(codeBytes);
+            for (int ins : p.code) {
+                int op = ins & 0xFF;
+                switch (op) {
+                    case Program.CONST:
+                        c.writeByte(0x14); c.writeShort(doubleConst(p.constants[ins >>> 8])); // ldc2_w
+                        break;
+                    case Program.LOAD:
+                        c.writeByte(0x2B);                 // aload_1
+                        pushInt(c, ins >>> 8);
+                        c.writeByte(0x31);                 // daload
+                        break;
+                    case Program.ADD: c.writeByte(0x63); break; // dadd
+                    case Program.SUB: c.writeByte(0x67); break; // dsub
+                    case Program.MUL: c.writeByte(0x6B); break; // dmul
+                    case Program.NEG: c.writeByte(0x77); break; // dneg
+                    default:
+                        pushInt(c, op);
+                        if (Program.arity(op) == 2) {
+                            c.writeByte(0xB8); c.writeShort(binaryOp);   // invokestatic
+                        } else {
+                            c.writeByte(0x1C);                           // iload_2
+                            c.writeByte(0xB8); c.writeShort(functionOp);
+                        }
+                }
+            }
+            c.writeByte(0xAF); // dreturn
+            byte[] body = codeBytes.toByteArray();
+            if (body.length > 65535 || poolCount > 65535) return null;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256 + body.length + poolBytes.size());
+            DataOutputStream w = new DataOutputStream(out);
+            w.writeInt(0xCAFEBABE);
+            w.writeShort(0); w.writeShort(61);          // Java 17 class file
+            w.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(w);
+            w.writeShort(0x0011);                       // ACC_PUBLIC | ACC_FINAL
+            w.writeShort(thisClass);
+            w.writeShort(objectClass);
+            w.writeShort(1); w.writeShort(kernelClass); // implements Kernel
+            w.writeShort(0);                            // fields
+            w.writeShort(2);                            // methods
+
+            // public <init>() { super(); }
+            w.writeShort(0x0001); w.writeShort(initName); w.writeShort(initDesc);
+            w.writeShort(1); w.writeShort(codeAttr); w.writeInt(12 + 5);
+            w.writeShort(1); w.writeShort(1);           // max stack, max locals
+            w.writeInt(5);
+            w.writeByte(0x2A); w.writeByte(0xB7); w.writeShort(objectInit); w.writeByte(0xB1); // aload_0, invokespecial, return
+            w.writeShort(0); w.writeShort(0);           // exception table, attributes
+
+            // public double eval(double[] vars, boolean degreeMode)
+            w.writeShort(0x0001); w.writeShort(evalName); w.writeShort(evalDesc);
+            w.writeShort(1); w.writeShort(codeAttr); w.writeInt(12 + body.length);
+            w.writeShort(2 * p.maxStack + 4); w.writeShort(3);
+            w.writeInt(body.length);
+            w.write(body);
+            w.writeShort(0); w.writeShort(0);
+
+            w.writeShort(0);                            // class attributes
+            w.flush();
+            return out.toByteArray();
+        }
+
+        private static void pushInt(DataOutputStream c, int v) throws IOException {
+            if (v <= 5) c.writeByte(0x03 + v);                       // iconst_<v>
+            else if (v <= 127) { c.writeByte(0x10); c.writeByte(v); } // bipush
+            else { c.writeByte(0x11); c.writeShort(v); }              // sipush (slots are < 2^16 here)
+        }
+
+        private int utf8(String v) throws IOException {
+            Integer idx = poolIndex.get("U" + v);
+            if (idx != null) return idx;
+            pool.writeByte(UTF8); pool.writeUTF(v);
+            poolIndex.put("U" + v, poolCount);
+            return poolCount++;
+        }
+
+        private int classRef(String internalName) throws IOException {
+            Integer idx = poolIndex.get("C" + internalName);
+            if (idx != null) return idx;
+            int name = utf8(internalName);
+            pool.writeByte(CLASS); pool.writeShort(name);
+            poolIndex.put("C" + internalName, poolCount);
+            return poolCount++;
+        }
+
+        private int methodRef(int owner, String name, String desc) throws IOException {
+            String key = "M" + owner + "." + name + desc;
+            Integer idx = poolIndex.get(key);
+            if (idx != null) return idx;
+            int n = utf8(name), d = utf8(desc);
+            pool.writeByte(NAME_AND_TYPE); pool.writeShort(n); pool.writeShort(d);
+            int nat = poolCount++;
+            pool.writeByte(METHODREF); pool.writeShort(owner); pool.writeShort(nat);
+            poolIndex.put(key, poolCount);
+            return poolCount++;
+        }
+
+        private int doubleConst(double v) throws IOException {
+            String key = "D" + Double.doubleToRawLongBits(v);
+            Integer idx = poolIndex.get(key);
+            if (idx != null) return idx;
+            pool.writeByte(DOUBLE); pool.writeLong(Double.doubleToRawLongBits(v)); // keep NaN payloads exact
+            poolIndex.put(key, poolCount);
+            int at = poolCount;
+            poolCount += 2; // doubles take two pool slots
+            return at;
+        }
+    }
+
+    // Bounded LRU of compiled expressions keyed by normalized text
+    static final class ExpressionCache {
+        private final int capacity;
+        private final LinkedHashMap<String, CompiledExpression> map;
+        private long hits;
+        private long misses;
+
+        ExpressionCache(int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+            this.capacity = capacity;
+            this.map = new LinkedHashMap<String, CompiledExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                    return size() > ExpressionCache.this.capacity;
+                }
+            };
+        }
+
+        // Parse errors are not cached: a bad expression throws on every call, as before
+        CompiledExpression compile(String expr) throws Exception {
+            String key = normalize(expr);
+            synchronized (this) {
+                CompiledExpression ce = map.get(key);
+                if (ce != null) { hits++; return ce; }
+                misses++;
+            }
+            CompiledExpression ce = CompiledExpression.parse(key);
+            synchronized (this) {
+                CompiledExpression raced = map.putIfAbsent(key, ce);
+                return raced != null ? raced : ce;
+            }
+        }
+
+        // Whitespace between tokens is only a separator, so trim and collapse runs of it
+        static String normalize(String expr) {
+            StringBuilder sb = new StringBuilder(expr.length());
+            boolean pendingSpace = false;
+            for (int i = 0; i < expr.length(); i++) {
+                char ch = expr.charAt(i);
+                if (Character.isWhitespace(ch)) { pendingSpace = sb.length() > 0; continue; }
+                if (pendingSpace) { sb.append(' '); pendingSpace = false; }
+                sb.append(ch);
+            }
+            return sb.toString();
+        }
+
+        synchronized long hitCount() { return hits; }
+        synchronized long missCount() { return misses; }
+        synchronized int size() { return map.size(); }
+        synchronized void clear() { map.clear(); hits = 0; misses = 0; }
+
+        synchronized String stats() {
+            long total = hits + misses;
+            double rate = total == 0 ? 0 : hits * 100.0 / total;
+            return String.format("cache size=%d/%d hits=%d misses=%d (%.1f%% hit rate)", map.size(), capacity, hits, misses, rate);
+        }
+    }
+
     // Key bindings
     private void setupKeyBindings() {
         JRootPane root = getRootPane();
@@ -747,8 +1469,185 @@ public class Calculator extends JFrame {
         im.put(KeyStroke.getKeyStroke("typed " + key.trim()), actionKey);
     }
 
+    /* ========== Headless batch mode ========== */
+
+    /*
+     * Evaluates a file of expressions, one per line, on a fork-join pool and writes
+     * one result line per input line, in input order. Input is read in chunks; the
+     * next chunk is read while the current one is being evaluated. Degree/radian mode
+     * is a per-job setting instead of window state.
+     */
+    static final class BatchJob {
+        static final int DEFAULT_CHUNK = 65536;
+        private static final int LEAF = 256;
+
+        final boolean degreeMode;
+        final int chunkSize;
+        private final ForkJoinPool pool;
+        private long lines, errors;
+        private final LongAdder opsBefore = new LongAdder(), opsAfter = new LongAdder();
+
+        BatchJob(boolean degreeMode, int parallelism, int chunkSize) {
+            this.degreeMode = degreeMode;
+            this.chunkSize = chunkSize;
+            this.pool = new ForkJoinPool(parallelism);
+        }
+
+        long lineCount() { return lines; }
+        long errorCount() { return errors; }
+        long opsBeforeOptimization() { return opsBefore.sum(); }
+        long opsAfterOptimization() { return opsAfter.sum(); }
+
+        void run(BufferedReader in, Writer out) throws IOException {
+            try {
+                String[] chunk = readChunk(in);
+                while (chunk.length > 0) {
+                    String[] results = new String[chunk.length];
+                    ForkJoinTask<Void> task = pool.submit(new EvalRange(chunk, results, 0, chunk.length));
+                    String[] next = readChunk(in);
+                    task.join();
+                    for (String r : results) {
+                        if (r.startsWith("Error")) errors++;
+                        out.write(r);
+                        out.write('\n');
+                    }
+                    lines += chunk.length;
+                    chunk = next;
+                }
+                out.flush();
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        private String[] readChunk(BufferedReader in) throws IOException {
+            List<String> buf = new ArrayList<>(Math.min(chunkSize, 4096));
+            String ln;
+            while (buf.size() < chunkSize && (ln = in.readLine()) != null) buf.add(ln);
+            return buf.toArray(new String[0]);
+        }
+
+        String evaluateLine(String line) {
+            if (line.trim().isEmpty()) return "";
+            try {
+                CompiledExpression ce = CompiledExpression.parse(line);
+                opsBefore.add(ce.opCountBefore());
+                opsAfter.add(ce.opCountAfter());
+                return Double.toString(ce.program.evaluate(degreeMode));
+            } catch (Exception ex) {
+                return "Error: " + ex.getMessage();
+            }
+        }
+
+        private final class EvalRange extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            final String[] src, dst;
+            final int from, to;
+
+            EvalRange(String[] src, String[] dst, int from, int to) {
+                this.src = src; this.dst = dst; this.from = from; this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= LEAF) {
+                    for (int i = from; i < to; i++) dst[i] = evaluateLine(src[i]);
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                invokeAll(new EvalRange(src, dst, from, mid), new EvalRange(src, dst, mid, to));
+            }
+        }
+    }
+
+    private static final String BATCH_USAGE = "Usage: java Calculator --batch <input> [<output>|-] [--rad] [--threads N]";
+
+    // java Calculator --batch <input> [<output>|-] [--rad] [--threads N]
+    private static void runBatch(String[] args) throws IOException {
+        String input = null, output = "-";
+        boolean degrees = true;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int positional = 0;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rad": degrees = false; break;
+                case "--deg": degrees = true; break;
+                case "--threads":
+                    threads = 0;
+                    if (i + 1 < args.length) {
+                        try {
+                            threads = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException ignored) {
+                            // reported below with the usage line
+                        }
+                    }
+                    if (threads < 1) {
+                        System.err.println("--threads needs a number of at least 1");
+                        System.err.println(BATCH_USAGE);
+                        return;
+                    }
+                    break;
+                default:
+                    if (positional++ == 0) input = args[i];
+                    else output = args[i];
+            }
+        }
+        if (input == null) {
+            System.err.println(BATCH_USAGE);
+            return;
+        }
+        BatchJob job = new BatchJob(degrees, threads, BatchJob.DEFAULT_CHUNK);
+        long t0 = System.nanoTime();
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+             Writer out = "-".equals(output)
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)
+                     : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+            job.run(in, out);
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.err.printf("Evaluated %d lines (%d errors) in %.2fs, %.0f lines/s, %d threads, %s%n",
+                job.lineCount(), job.errorCount(), secs, job.lineCount() / Math.max(secs, 1e-9), threads, degrees ? "DEG" : "RAD");
+        System.err.printf("Ops before/after optimization: %d -> %d%n", job.opsBeforeOptimization(), job.opsAfterOptimization());
+    }
+
+    // java Calculator --check: lexer cases that have regressed before; exit status 1 if any fails
+    private static final String[][] CHECKS = {
+            // expression, expected value with x = 4 (null: must be rejected)
+            { "2 3", null }, { "1.2.3", null }, { "(2)3", null }, { "x 2", null },
+            { "2(3)", "6" }, { "2pi", String.valueOf(2 * Math.PI) }, { "2x", "8" }, { "2 x", "8" },
+            { "(2)(3)", "6" }, { ".5+1.5", "2" }, { "-2*3", "-6" }, { "3-2", "1" },
+    };
+
+    private static int runChecks() {
+        int failed = 0;
+        for (String[] c : CHECKS) {
+            String got;
+            try {
+                Program p = CompiledExpression.parse(c[0]).program;
+                got = String.valueOf(p.evaluate(true, p.bind(Map.of("x", 4.0))));
+            } catch (Exception e) {
+                got = null;
+            }
+            boolean ok = c[1] == null ? got == null : got != null && Double.parseDouble(got) == Double.parseDouble(c[1]);
+            if (!ok) {
+                failed++;
+                System.err.println("FAIL " + c[0] + ": expected " + (c[1] == null ? "an error" : c[1]) + ", got " + (got == null ? "an error" : got));
+            }
+        }
+        System.err.println((CHECKS.length - failed) + "/" + CHECKS.length + " checks passed");
+        return failed == 0 ? 0 : 1;
+    }
+
     // ---------- Entry ----------
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check")) {
+            System.exit(runChecks());
+        }
         SwingUtilities.invokeLater(Calculator::new);
     }
 
@@ -227,15 +227,12 @@ public class CarRentalSystem {
     private static void loadCars() {
         cars.clear();
         if (!Files.exists(CARS_FILE)) return;
-        try {
-            List<String> lines = Files.readAllLines(CARS_FILE, StandardCharsets.UTF_8);
-            for (String ln : lines) {
-                if (ln.trim().isEmpty()) continue;
-                String[] parts = ln.split(",", -1);
-                if (parts.length >= 3) {
-                    int id = Integer.parseInt(parts[0].trim());
-                    String model = parts[1].trim();
-                    double price = Double.parseDouble(parts[2].trim());
+        try (Csv.Reader r = Csv.Reader.open(CARS_FILE)) {
+            while (r.next()) {
+                if (r.fieldCount() >= 3) {
+                    int id = r.intField(0);
+                    String model = r.string(1).trim();
+                    double price = r.doubleField(2);
                     cars.add(new Car(id, model, price));
                 }
             }
@@ -245,16 +242,13 @@ public class CarRentalSystem {
     private static void loadBookings() {
         bookings.clear();
         if (!Files.exists(BOOKINGS_FILE)) return;
-        try {
-            List<String> lines = Files.readAllLines(BOOKINGS_FILE, StandardCharsets.UTF_8);
-            for (String ln : lines) {
-                if (ln.trim().isEmpty()) continue;
-                String[] parts = ln.split(",", -1);
-                if (parts.length >= 4) {
-                    int id = Integer.parseInt(parts[0].trim());
-                    int carId = Integer.parseInt(parts[1].trim());
-                    String customer = parts[2].trim();
-                    int days = Integer.parseInt(parts[3].trim());
+        try (Csv.Reader r = Csv.Reader.open(BOOKINGS_FILE)) {
+            while (r.next()) {
+                if (r.fieldCount() >= 4) {
+                    int id = r.intField(0);
+                    int carId = r.intField(1);
+                    String customer = r.string(2).trim();
+                    int days = r.intField(3);
                     bookings.add(new Booking(id, carId, customer, days));
                 }
             }
@@ -262,18 +256,14 @@ public class CarRentalSystem {
     }
 
     private static void saveCars() {
-        try {
-            List<String> lines = new ArrayList<>();
-            for (Car c : cars) lines.add(c.id + "," + c.model + "," + c.pricePerDay);
-            Files.write(CARS_FILE, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (Csv.Writer w = Csv.Writer.create(CARS_FILE)) {
+            for (Car c : cars) w.field(c.id).field(c.model).field(c.pricePerDay).endRecord();
         } catch (Exception e) { e.printStackTrace(); }
     }
 
     private static void saveBookings() {
-        try {
-            List<String> lines = new ArrayList<>();
-            for (Booking b : bookings) lines.add(b.id + "," + b.carId + "," + b.customerName + "," + b.days);
-            Files.write(BOOKINGS_FILE, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        try (Csv.Writer w = Csv.Writer.create(BOOKINGS_FILE)) {
+            for (Booking b : bookings) w.field(b.id).field(b.carId).field(b.customerName).field(b.days).endRecord();
         } catch (Exception e) { e.printStackTrace(); }
     }
 
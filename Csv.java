@@ -0,0 +1,412 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Csv.java
+ *
+ * Shared RFC 4180 CSV reader/writer for the file-backed programs
+ * (AddressBooking, BloodBankSystem, OnlineQuizApp, CarRentalSystem, ExpenseTracker,
+ * EnterpriseComplaintSystem).
+ *
+ * - Reader maps the file in windows (64 MB by default), so files larger than the heap,
+ *   or than 2 GB, stream through. Quoted fields may contain commas, doubled quotes and
+ *   line breaks. Fields are CharSequence views into a per-record buffer: valid until
+ *   the next call to next(), and copied only when you call toString()/string(i).
+ * - Writer quotes only when needed and encodes UTF-8 through one direct buffer.
+ *
+ * Typical use:
+ *   try (Csv.Reader r = Csv.Reader.open(path)) {
+ *       while (r.next()) { if (r.isBlank()) continue; String id = r.string(0); ... }
+ *   }
+ */
+public final class Csv {
+
+    private Csv() {}
+
+    // ========================
+    // READER
+    // ========================
+
+    public static final class Reader implements Closeable {
+        public static final int DEFAULT_WINDOW = 64 << 20;
+        private static final int MAX_WINDOW = Integer.MAX_VALUE - 8;
+
+        private final FileChannel channel; // null when reading a caller-supplied buffer
+        private final long fileSize;
+        private int window;
+        private ByteBuffer buf;
+        private long bufBase;   // file offset of buf index 0
+        private int pos;        // next unread index in buf
+        private boolean skipLf; // last record ended in '\r'
+
+        // current record: unquoted bytes, decoded chars and field boundaries (char offsets)
+        private byte[] raw = new byte[256];
+        private int rawLen;
+        private boolean ascii;
+        private int[] rawEnds = new int[16];
+        private char[] chars = new char[256];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private Field[] views = new Field[16];
+        private int count;
+        private long records;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private Reader(FileChannel channel, long fileSize, ByteBuffer buf, int window) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.buf = buf;
+            this.window = window;
+            skipBom();
+        }
+
+        public static Reader open(Path file) throws IOException {
+            return open(file, DEFAULT_WINDOW);
+        }
+
+        public static Reader open(Path file, int window) throws IOException {
+            FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long size = ch.size();
+                ByteBuffer first = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(window, size));
+                return new Reader(ch, size, first, window);
+            } catch (IOException | RuntimeException e) {
+                ch.close();
+                throw e;
+            }
+        }
+
+        /** Reads buf from its position to its limit; the buffer is not copied. */
+        public static Reader of(ByteBuffer buf) {
+            ByteBuffer b = buf.slice();
+            return new Reader(null, b.limit(), b, b.limit());
+        }
+
+        private void skipBom() {
+            if (buf.limit() >= 3 && (buf.get(0) & 0xFF) == 0xEF && (buf.get(1) & 0xFF) == 0xBB && (buf.get(2) & 0xFF) == 0xBF) {
+                pos = 3;
+            }
+        }
+
+        /** Advances to the next record; false at end of input. */
+        public boolean next() throws IOException {
+            while (true) {
+                if (pos >= buf.limit() && !remap()) return false;
+                if (skipLf) {
+                    skipLf = false;
+                    if (buf.get(pos) == '\n') { pos++; continue; }
+                }
+                if (scanRecord()) {
+                    decode();
+                    records++;
+                    return true;
+                }
+                if (!remap()) throw new IOException("CSV record too large near byte " + (bufBase + pos));
+            }
+        }
+
+        private boolean more() {
+            return channel != null && bufBase + buf.limit() < fileSize;
+        }
+
+        // Re-maps so the window starts at the current record; grows the window if the
+        // record alone filled the previous one. False at end of input.
+        private boolean remap() throws IOException {
+            if (!more()) return false;
+            long start = bufBase + pos;
+            if (pos == 0) {
+                if (window == MAX_WINDOW) return false;
+                window = (int) Math.min((long) window * 2, MAX_WINDOW);
+            }
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(window, fileSize - start));
+            bufBase = start;
+            pos = 0;
+            return true;
+        }
+
+        // Scans one record from pos. False if the window ended mid-record and more input exists.
+        private boolean scanRecord() {
+            final ByteBuffer b = buf;
+            final int lim = b.limit();
+            int i = pos;
+            rawLen = 0;
+            count = 0;
+            ascii = true;
+            boolean inQuotes = false;
+            while (true) {
+                if (i >= lim) {
+                    if (more()) return false;
+                    endField();
+                    pos = i;
+                    return true;
+                }
+                byte c = b.get(i);
+                if (inQuotes) {
+                    if (c == '"') {
+                        if (i + 1 >= lim && more()) return false;
+                        if (i + 1 < lim && b.get(i + 1) == '"') { append((byte) '"'); i += 2; continue; }
+                        inQuotes = false;
+                    } else {
+                        append(c);
+                    }
+                    i++;
+                    continue;
+                }
+                switch (c) {
+                    case ',':
+                        endField();
+                        break;
+                    case '\n':
+                        endField();
+                        pos = i + 1;
+                        return true;
+                    case '\r':
+                        endField();
+                        pos = i + 1;
+                        skipLf = true;
+                        return true;
+                    case '"':
+                        inQuotes = true;
+                        break;
+                    default:
+                        append(c);
+                }
+                i++;
+            }
+        }
+
+        private void append(byte c) {
+            if (rawLen == raw.length) raw = Arrays.copyOf(raw, rawLen * 2);
+            raw[rawLen++] = c;
+            if (c < 0) ascii = false;
+        }
+
+        private void endField() {
+            if (count == rawEnds.length) {
+                int n = count * 2;
+                rawEnds = Arrays.copyOf(rawEnds, n);
+                starts = Arrays.copyOf(starts, n);
+                ends = Arrays.copyOf(ends, n);
+                views = Arrays.copyOf(views, n);
+            }
+            rawEnds[count++] = rawLen;
+        }
+
+        private void decode() throws CharacterCodingException {
+            if (chars.length < rawLen) chars = new char[Math.max(rawLen, chars.length * 2)];
+            if (ascii) {
+                for (int k = 0; k < rawLen; k++) chars[k] = (char) raw[k];
+                int s = 0;
+                for (int f = 0; f < count; f++) { starts[f] = s; ends[f] = s = rawEnds[f]; }
+                return;
+            }
+            // UTF-8 never decodes to more chars than bytes, so chars is big enough
+            CharBuffer out = CharBuffer.wrap(chars);
+            int s = 0;
+            for (int f = 0; f < count; f++) {
+                starts[f] = out.position();
+                decoder.reset();
+                decoder.decode(ByteBuffer.wrap(raw, s, rawEnds[f] - s), out, true);
+                decoder.flush(out);
+                ends[f] = out.position();
+                s = rawEnds[f];
+            }
+        }
+
+        public int fieldCount() { return count; }
+
+        public long recordNumber() { return records; }
+
+        /** True for an empty line. */
+        public boolean isBlank() { return count == 1 && ends[0] == starts[0]; }
+
+        /** View of field i, valid until next(); empty for a missing column. */
+        public CharSequence field(int i) {
+            if (i >= count) return "";
+            Field v = views[i];
+            if (v == null) views[i] = v = new Field(i);
+            return v;
+        }
+
+        /** Field i as a String ("" for a missing column). */
+        public String string(int i) {
+            return i < count ? new String(chars, starts[i], ends[i] - starts[i]) : "";
+        }
+
+        public boolean fieldEquals(int i, String s) {
+            if (i >= count) return s.isEmpty();
+            int len = ends[i] - starts[i];
+            if (len != s.length()) return false;
+            for (int k = 0; k < len; k++) if (chars[starts[i] + k] != s.charAt(k)) return false;
+            return true;
+        }
+
+        public boolean fieldEqualsIgnoreCase(int i, String s) {
+            return field(i).toString().equalsIgnoreCase(s);
+        }
+
+        /**
+         * Integer value of field i, ignoring surrounding spaces. A missing column
+         * reads as empty, so it throws NumberFormatException like a blank one.
+         */
+        public int intField(int i) {
+            if (i >= count) throw new NumberFormatException("For input string: \"\" (missing column " + i + ")");
+            int s = starts[i], e = ends[i];
+            while (s < e && chars[s] == ' ') s++;
+            while (e > s && chars[e - 1] == ' ') e--;
+            return Integer.parseInt(CharBuffer.wrap(chars), s, e, 10);
+        }
+
+        public double doubleField(int i) {
+            return Double.parseDouble(string(i).trim());
+        }
+
+        @Override
+        public void close() throws IOException {
+            buf = ByteBuffer.allocate(0);
+            if (channel != null) channel.close();
+        }
+
+        private final class Field implements CharSequence {
+            private final int index;
+
+            Field(int index) { this.index = index; }
+
+            @Override public int length() { return ends[index] - starts[index]; }
+
+            @Override public char charAt(int k) {
+                if (k < 0 || k >= length()) throw new IndexOutOfBoundsException(k);
+                return chars[starts[index] + k];
+            }
+
+            @Override public CharSequence subSequence(int from, int to) {
+                return new String(chars, starts[index] + from, to - from);
+            }
+
+            @Override public String toString() { return string(index); }
+        }
+    }
+
+    // ========================
+    // WRITER
+    // ========================
+
+    public static final class Writer implements Closeable, Flushable {
+        public static final int DEFAULT_BUFFER = 1 << 16;
+
+        private final WritableByteChannel out;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars;
+        private final ByteBuffer bytes;
+        private boolean atRecordStart = true;
+
+        public Writer(WritableByteChannel out, int bufferSize) {
+            this.out = out;
+            this.chars = CharBuffer.allocate(bufferSize);
+            this.bytes = ByteBuffer.allocateDirect(bufferSize * 3 + 16);
+        }
+
+        /** Creates or truncates file. */
+        public static Writer create(Path file) throws IOException {
+            return new Writer(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE), DEFAULT_BUFFER);
+        }
+
+        /** Appends to file, creating it if needed. */
+        public static Writer append(Path file) throws IOException {
+            return new Writer(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                    StandardOpenOption.WRITE), DEFAULT_BUFFER);
+        }
+
+        public Writer field(CharSequence s) throws IOException {
+            separator();
+            if (s == null) return this;
+            int len = s.length();
+            boolean quote = false;
+            for (int k = 0; k < len && !quote; k++) {
+                char c = s.charAt(k);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                for (int k = 0; k < len; k++) put(s.charAt(k));
+                return this;
+            }
+            put('"');
+            for (int k = 0; k < len; k++) {
+                char c = s.charAt(k);
+                if (c == '"') put('"');
+                put(c);
+            }
+            put('"');
+            return this;
+        }
+
+        public Writer field(long v) throws IOException { return field(Long.toString(v)); }
+
+        public Writer field(double v) throws IOException { return field(Double.toString(v)); }
+
+        public Writer field(boolean v) throws IOException { return field(v ? "true" : "false"); }
+
+        public Writer endRecord() throws IOException {
+            put('\n');
+            atRecordStart = true;
+            return this;
+        }
+
+        public Writer record(CharSequence... fields) throws IOException {
+            for (CharSequence f : fields) field(f);
+            return endRecord();
+        }
+
+        private void separator() throws IOException {
+            if (!atRecordStart) put(',');
+            atRecordStart = false;
+        }
+
+        private void put(char c) throws IOException {
+            if (!chars.hasRemaining()) drain(false);
+            chars.put(c);
+        }
+
+        private void drain(boolean endOfInput) throws IOException {
+            chars.flip();
+            encoder.encode(chars, bytes, endOfInput);
+            if (endOfInput) encoder.flush(bytes);
+            chars.compact(); // keeps a trailing high surrogate for the next round
+            bytes.flip();
+            while (bytes.hasRemaining()) out.write(bytes);
+            bytes.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain(true);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -1,4 +1,3 @@
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDate;
 import java.util.*;
@@ -183,20 +182,15 @@ public class EnterpriseComplaintSystem {
 
     // ================= STORAGE =================
     static void saveData() {
-        try {
-            List<String> lines = new ArrayList<>();
+        try (Csv.Writer w = Csv.Writer.create(FILE)) {
             for (Complaint c : complaints) {
-                lines.add(String.join(",",
-                        c.id,
+                w.record(c.id,
                         c.customer,
-                        c.description.replace(",", " "),
+                        c.description,
                         c.status,
                         c.createdBy,
-                        c.date));
+                        c.date);
             }
-            Files.write(FILE, lines, StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING);
         } catch (Exception e) {
             System.out.println("Error saving data.");
         }
@@ -206,10 +200,10 @@ public class EnterpriseComplaintSystem {
         complaints.clear();
         if (!Files.exists(FILE)) return;
 
-        try {
-            for (String l : Files.readAllLines(FILE)) {
-                String[] p = l.split(",", -1);
-                complaints.add(new Complaint(p[0], p[1], p[2], p[3], p[4], p[5]));
+        try (Csv.Reader r = Csv.Reader.open(FILE)) {
+            while (r.next()) {
+                if (r.isBlank()) continue;
+                complaints.add(new Complaint(r.string(0), r.string(1), r.string(2), r.string(3), r.string(4), r.string(5)));
                 idCounter++;
             }
         } catch (Exception e) {
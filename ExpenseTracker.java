@@ -1,4 +1,5 @@
 import java.io.*;
+import java.nio.file.*;
 import java.text.*;
 import java.util.*;
 
@@ -7,6 +8,7 @@ public class ExpenseTracker{
     static Scanner sc = new Scanner(System.in);
     static ArrayList<Expense> expenses = new ArrayList<>();
     static double budget = 0;
+    static final Path EXPENSES_CSV = Paths.get("expenses.csv");
 
     public static void main(String[] args) {
         loadCSV(); // load existing data
@@ -155,10 +157,9 @@ public class ExpenseTracker{
     // SAVE CSV
     // ============================
     private static void saveCSV() {
-        try (PrintWriter pw = new PrintWriter("expenses.csv")) {
+        try (Csv.Writer w = Csv.Writer.create(EXPENSES_CSV)) {
             for (Expense ex : expenses) {
-                pw.println(ex.amount + "," + ex.category + "," + ex.date + "," +
-                        ex.description + "," + ex.recurring);
+                w.field(ex.amount).field(ex.category).field(ex.date).field(ex.description).field(ex.recurring).endRecord();
             }
             System.out.println("Saved to expenses.csv");
         } catch (Exception e) {
@@ -170,22 +171,19 @@ public class ExpenseTracker{
     // LOAD CSV
     // ============================
     private static void loadCSV() {
-        try {
-            expenses.clear();
-            BufferedReader br = new BufferedReader(new FileReader("expenses.csv"));
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] p = line.split(",");
+        expenses.clear();
+        try (Csv.Reader r = Csv.Reader.open(EXPENSES_CSV)) {
+            while (r.next()) {
+                if (r.isBlank()) continue;
                 Expense ex = new Expense(
-                        Double.parseDouble(p[0]),
-                        p[1], p[2], p[3],
-                        Boolean.parseBoolean(p[4])
+                        r.doubleField(0),
+                        r.string(1), r.string(2), r.string(3),
+                        Boolean.parseBoolean(r.string(4))
                 );
                 expenses.add(ex);
             }
-            br.close();
             System.out.println("Loaded " + expenses.size() + " expenses.");
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.out.println("No CSV found, starting fresh.");
         } catch (Exception e) {
             System.out.println("Error loading CSV!");
@@ -1,4 +1,13 @@
 import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.sql.*;
@@ -6,6 +15,10 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * OnlineQuizApp.java
@@ -16,6 +29,17 @@ import java.util.concurrent.*;
  * - Stores data in SQLite (if jdbc driver present) or falls back to CSV
  *
  * To enable SQLite DB persistence, put sqlite-jdbc jar on classpath (optional).
+ * The database runs in WAL mode; quiz results are written by a background
+ * thread in batches of quiz.batchSize (default 256) or every quiz.batchMillis
+ * (default 50), whichever comes first.
+ * Without the driver, questions.csv is append-only: deletes append a
+ * tombstone and the file is compacted in the background.
+ *
+ * java OnlineQuizApp --serve [port] [--stratified] runs an exam-hall server on
+ * localhost (default port 5555); see QuizServer for the line protocol.
+ *
+ * Quizzes draw from an in-memory QuestionBank snapshot that is rebuilt after
+ * each admin change; storage is read once per change, not once per quiz.
  *
  * Example compile / run (with sqlite jar):
  * javac -cp ".:sqlite-jdbc-3.40.1.0.jar" OnlineQuizApp.java
@@ -28,31 +52,49 @@ public class OnlineQuizApp {
     private static final String DB_FILE = "quiz.db";
     private static final DateTimeFormatter DT_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    // Result inserts are committed together once this many are queued, or after this long
+    private static final int RESULT_BATCH_SIZE = Integer.getInteger("quiz.batchSize", 256);
+    private static final long RESULT_BATCH_MILLIS = Long.getLong("quiz.batchMillis", 50);
+
+    // Quiz timers: 512 slots of 50 ms make one turn of the wheel about 25 s
+    private static final long TICK_MILLIS = 50;
+    private static final int WHEEL_SLOTS = 512;
+    private static final int DEFAULT_PORT = 5555;
+
     // Storage mode flags
     private final boolean dbAvailable;
-    private Connection conn = null;
+    private QuizDb db = null;
+    private QuestionFile questionFile = null; // CSV mode only
+    private TimingWheel timer = null;         // shared by local quizzes, started on first use
+    // Current question bank; readers take the reference, admin changes swap in a rebuilt one
+    private final AtomicReference<QuestionBank> bank = new AtomicReference<>();
 
     public OnlineQuizApp() {
         boolean dbok = false;
         try {
             // attempt to load SQLite driver
             Class.forName("org.sqlite.JDBC");
-            String url = "jdbc:sqlite:" + DB_FILE;
-            conn = DriverManager.getConnection(url);
-            conn.setAutoCommit(true);
-            ensureDbTables();
+            db = QuizDb.open("jdbc:sqlite:" + DB_FILE, RESULT_BATCH_SIZE, RESULT_BATCH_MILLIS);
             dbok = true;
             System.out.println("[INFO] SQLite available — using DB file: " + DB_FILE);
         } catch (ClassNotFoundException | SQLException e) {
             System.out.println("[WARN] SQLite JDBC not available or DB error. Falling back to CSV files.");
             // e.printStackTrace();
             dbok = false;
-            closeQuietly(conn);
-            conn = null;
+            db = null;
+            questionFile = new QuestionFile(QUESTIONS_CSV);
         }
         dbAvailable = dbok;
     }
 
+    /** Waits for queued results to be written and releases the database or question file. */
+    public void close() {
+        closeQuietly(db);
+        db = null;
+        closeQuietly(questionFile);
+        questionFile = null;
+    }
+
     // === MAIN MENU ===
     public void run() {
         while (true) {
@@ -67,7 +109,7 @@ public class OnlineQuizApp {
                 case "2" -> userMenu();
                 case "3" -> {
                     println("Exiting. Goodbye!");
-                    closeQuietly(conn);
+                    close();
                     return;
                 }
                 default -> println("Invalid selection.");
@@ -83,7 +125,8 @@ public class OnlineQuizApp {
             println("2) List questions");
             println("3) Delete question by ID");
             println("4) Export questions to CSV");
-            println("5) Back");
+            println("5) Import questions from CSV");
+            println("6) Back");
             print("Choose option: ");
             String opt = SC.nextLine().trim();
             switch (opt) {
@@ -91,7 +134,8 @@ public class OnlineQuizApp {
                 case "2" -> listQuestions();
                 case "3" -> deleteQuestionInteractive();
                 case "4" -> exportQuestionsCsv();
-                case "5" -> { return; }
+                case "5" -> importQuestionsInteractive();
+                case "6" -> { return; }
                 default -> println("Invalid selection.");
             }
         }
@@ -99,8 +143,8 @@ public class OnlineQuizApp {
 
     // === USER MENU ===
     private void userMenu() {
-        List<Question> questions = loadAllQuestions();
-        if (questions.isEmpty()) {
+        QuestionBank questions = bank();
+        if (questions.size() == 0) {
             println("No questions available. Ask Admin to add some first.");
             return;
         }
@@ -108,11 +152,16 @@ public class OnlineQuizApp {
         String username = SC.nextLine().trim();
         if (username.isEmpty()) username = "Anonymous";
         int totalQuestions = Math.min(questions.size(), askInt("How many questions for the quiz? (max " + questions.size() + "): ", 1, questions.size()));
+        boolean spread = false;
+        if (questions.strataCount() > 1) {
+            print("Spread questions across topics and difficulty levels? (y/N): ");
+            spread = SC.nextLine().trim().equalsIgnoreCase("y");
+        }
         int timeLimitSec = askInt("Total time for quiz in seconds (e.g. 60): ", 10, 3600);
 
         // pick random subset
-        Collections.shuffle(questions);
-        List<Question> quiz = questions.subList(0, totalQuestions);
+        Random rnd = ThreadLocalRandom.current();
+        List<Question> quiz = spread ? questions.sampleStratified(totalQuestions, rnd) : questions.sample(totalQuestions, rnd);
 
         // run timed quiz
         QuizResult result = runTimedQuiz(username, quiz, timeLimitSec);
@@ -136,13 +185,19 @@ public class OnlineQuizApp {
             opts[i] = SC.nextLine().trim();
         }
         int correctIndex = askInt("Enter correct option number (1-4): ", 1, 4) - 1;
-        Question q = new Question(-1, qText, opts[0], opts[1], opts[2], opts[3], correctIndex);
-        boolean ok = saveQuestion(q);
-        println(ok ? "Question saved." : "Failed to save question.");
+        print("Topic (optional): ");
+        String topic = SC.nextLine().trim();
+        print("Difficulty, e.g. easy/medium/hard (optional): ");
+        String difficulty = SC.nextLine().trim();
+        Question q = new Question(-1, qText, opts[0], opts[1], opts[2], opts[3], correctIndex, topic, difficulty);
+        QuestionBank current = bank(); // loaded before the write, so the new question is not in it yet
+        Question saved = saveQuestion(q);
+        if (saved != null) bank.set(current.with(saved));
+        println(saved != null ? "Question saved." : "Failed to save question.");
     }
 
     private void listQuestions() {
-        List<Question> questions = loadAllQuestions();
+        List<Question> questions = bank().all();
         if (questions.isEmpty()) { println("No questions present."); return; }
         println("\nQuestions:");
         for (Question q : questions) {
@@ -154,224 +209,207 @@ public class OnlineQuizApp {
         listQuestions();
         int id = askInt("Enter question ID to delete (or 0 to cancel): ", 0, Integer.MAX_VALUE);
         if (id == 0) { println("Cancelled."); return; }
+        QuestionBank current = bank();
         boolean ok = deleteQuestionById(id);
+        if (ok) bank.set(current.without(id));
         println(ok ? "Deleted." : "Not found / failed.");
     }
 
     // Export questions to CSV file explicitly
     private void exportQuestionsCsv() {
-        List<Question> questions = loadAllQuestions();
+        if (!dbAvailable) {
+            // questions.csv already is the store; exporting just drops deleted rows from it
+            try {
+                questionFile.compact();
+                println("Exported to " + QUESTIONS_CSV.toAbsolutePath());
+            } catch (IOException | RuntimeException e) {
+                println("Export failed: " + e.getMessage());
+            }
+            return;
+        }
+        List<Question> questions = bank().all();
         if (questions.isEmpty()) { println("No questions to export."); return; }
         Path out = QUESTIONS_CSV; // same file used in fallback
-        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-            w.write("id,question,opt1,opt2,opt3,opt4,answerIndex");
-            w.newLine();
-            for (Question q : questions) {
-                w.write(q.toCsvLine());
-                w.newLine();
-            }
+        try (Csv.Writer w = Csv.Writer.create(out)) {
+            w.record(QuestionFile.HEADER.split(","));
+            for (Question q : questions) q.writeTo(w, q.id);
+            QuestionFile.forget(out); // the next CSV-mode run rescans for the highest id
             println("Exported to " + out.toAbsolutePath());
         } catch (IOException e) {
             println("Export failed: " + e.getMessage());
         }
     }
 
+    // Stream a question file into the store: rows of question,opt1..opt4,answerIndex[,topic,difficulty]
+    // (answerIndex 0-based, as written by export), optionally preceded by an id column that is ignored
+    private void importQuestionsInteractive() {
+        print("Path of question file to import: ");
+        String file = SC.nextLine().trim();
+        if (file.isEmpty()) { println("Cancelled."); return; }
+        Path src = Paths.get(file);
+        if (!Files.isRegularFile(src)) { println("No such file: " + src.toAbsolutePath()); return; }
+        long start = System.nanoTime();
+        try (Csv.Reader r = Csv.Reader.open(src)) {
+            QuestionRows rows = new QuestionRows(r);
+            int added;
+            try {
+                added = dbAvailable ? db.insertQuestions(rows) : questionFile.appendAll(rows);
+            } finally {
+                refreshBank(); // a failed CSV import may still have appended rows
+            }
+            double secs = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+            println("Imported " + added + " question(s), skipped " + rows.skipped + " invalid row(s) in "
+                    + String.format("%.2f", secs) + "s (" + Math.round(added / secs) + " rows/s).");
+        } catch (IOException | SQLException | UncheckedIOException e) {
+            println("Import failed: " + e.getMessage());
+        }
+    }
+
     // === Timed quiz runner ===
+    // Answers are scored as they come in; one that arrives after the deadline is not counted,
+    // so a quiz that runs out of time keeps exactly the score earned before it did
     private QuizResult runTimedQuiz(String username, List<Question> quiz, int timeLimitSec) {
         println("\nStarting quiz for " + username + ". You have " + timeLimitSec + " seconds total. Press Enter to begin.");
         SC.nextLine();
 
-        final ExecutorService ex = Executors.newSingleThreadExecutor();
-        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        final long startTime = System.currentTimeMillis();
-        final boolean[] timeUp = {false};
-        final Future<QuizResult> future = ex.submit(() -> {
-            int score = 0;
-            int qnum = 0;
-            for (Question q : quiz) {
-                qnum++;
-                long elapsed = (System.currentTimeMillis() - startTime) / 1000;
-                if (elapsed >= timeLimitSec) { timeUp[0] = true; break; }
-                println("\nQuestion " + qnum + " of " + quiz.size() + "  (elapsed " + elapsed + "s)");
-                println(q.question);
-                println("1) " + q.opt1);
-                println("2) " + q.opt2);
-                println("3) " + q.opt3);
-                println("4) " + q.opt4);
-                print("Your answer (1-4) or 's' to skip: ");
-                String ans = SC.nextLine().trim();
-                if (ans.equalsIgnoreCase("s")) continue;
-                try {
-                    int a = Integer.parseInt(ans);
-                    if (a >= 1 && a <= 4) {
-                        if (a - 1 == q.correctIndex) score++;
-                    }
-                } catch (NumberFormatException ignore) { /* invalid -> treat as skip */ }
-            }
-            return new QuizResult(username, score, quiz.size(), LocalDateTime.now());
-        });
+        long start = System.nanoTime();
+        QuizSession session = new QuizSession(username, quiz, start + TimeUnit.SECONDS.toNanos(timeLimitSec));
+        TimingWheel.Timeout alarm = localTimer().schedule(TimeUnit.SECONDS.toMillis(timeLimitSec),
+                () -> println("\n*** Time is up! Press Enter to finish. ***"));
+        boolean timeUp = false;
+        while (!session.isFinished()) {
+            Question q = session.current();
+            long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+            println("\nQuestion " + session.number() + " of " + quiz.size() + "  (elapsed " + elapsed + "s)");
+            println(q.question);
+            println("1) " + q.opt1);
+            println("2) " + q.opt2);
+            println("3) " + q.opt3);
+            println("4) " + q.opt4);
+            print("Your answer (1-4) or 's' to skip: ");
+            String ans = SC.nextLine().trim();
+            if (!session.answer(ans, System.nanoTime())) { timeUp = true; break; }
+        }
+        alarm.cancel();
+        if (timeUp) println("[INFO] Time ran out; answers given before the deadline were scored.");
+        println("\n--- Quiz finished ---");
+        return session.result();
+    }
 
-        // schedule forcing finish
-        scheduler.schedule(() -> {
-            if (!future.isDone()) {
-                println("\n*** Time is up! Finishing quiz... ***");
-                // We can't cancel blocking input easily; marking timeUp and future will check elapsed between questions.
-                // To be safe, attempt to cancel.
-                future.cancel(true);
-            }
-        }, timeLimitSec, TimeUnit.SECONDS);
+    private TimingWheel localTimer() {
+        if (timer == null) {
+            timer = new TimingWheel(TICK_MILLIS, WHEEL_SLOTS);
+            timer.startTicker("quiz-timer");
+        }
+        return timer;
+    }
 
-        QuizResult result;
+    // === Server mode ===
+    private void serve(int port, boolean stratified) {
+        if (bank().size() == 0) {
+            println("No questions available. Add or import some before starting the server.");
+            return;
+        }
+        CsvResultWriter csv = dbAvailable && db != null ? null : new CsvResultWriter(RESULTS_CSV);
+        QuizServer server = new QuizServer(port, this::bank, stratified, r -> {
+            if (csv == null) db.submitResult(r);
+            else csv.submit(r);
+        });
+        Thread console = new Thread(() -> {
+            while (SC.hasNextLine()) {
+                String cmd = SC.nextLine().trim();
+                if (cmd.equalsIgnoreCase("stop")) { server.stop(); return; }
+                if (cmd.equalsIgnoreCase("stats")) println(server.stats());
+                else if (cmd.equalsIgnoreCase("reload")) println("Question bank reloaded: " + refreshBank().size() + " questions.");
+                else if (!cmd.isEmpty()) println("Commands: stats, reload, stop");
+            }
+        }, "quiz-server-console");
+        console.setDaemon(true);
+        console.start();
         try {
-            // Wait for completion; if cancelled due to timeout, gather partial info if possible (future cancelled)
-            result = future.get(timeLimitSec + 2L, TimeUnit.SECONDS); // small buffer
-        } catch (CancellationException | InterruptedException | ExecutionException | TimeoutException e) {
-            // Timeout or cancel — partial progress may have been lost; we'll compute 0 or ask user to press Enter to continue.
-            println("[INFO] Quiz interrupted by timeout. We'll compute results collected so far if any.");
-            // For robustness, we will ask user how many correct they remember (best effort).
-            int rememberedCorrect = askInt("Enter number of questions you answered correctly before timeout (or 0 if unknown): ", 0, quiz.size());
-            result = new QuizResult(username, rememberedCorrect, quiz.size(), LocalDateTime.now());
+            server.run();
+        } catch (IOException e) {
+            println("Server failed: " + e.getMessage());
         } finally {
-            scheduler.shutdownNow();
-            ex.shutdownNow();
+            if (csv != null) csv.close();
         }
-        println("\n--- Quiz finished ---");
-        return result;
+        println(server.stats());
     }
 
     // === Persistence methods ===
 
-    // Ensure DB tables exist if using DB
-    private void ensureDbTables() throws SQLException {
-        if (conn == null) return;
-        try (Statement st = conn.createStatement()) {
-            st.execute("CREATE TABLE IF NOT EXISTS questions (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "question TEXT NOT NULL," +
-                    "opt1 TEXT, opt2 TEXT, opt3 TEXT, opt4 TEXT," +
-                    "answer_index INTEGER NOT NULL" +
-                    ");");
-            st.execute("CREATE TABLE IF NOT EXISTS results (" +
-                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "username TEXT NOT NULL," +
-                    "score INTEGER NOT NULL," +
-                    "total INTEGER NOT NULL," +
-                    "datetime TEXT NOT NULL" +
-                    ");");
-        }
-    }
-
-    // Save question to DB or CSV
-    private boolean saveQuestion(Question q) {
-        if (dbAvailable && conn != null) {
-            String sql = "INSERT INTO questions (question,opt1,opt2,opt3,opt4,answer_index) VALUES (?,?,?,?,?,?);";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, q.question);
-                ps.setString(2, q.opt1);
-                ps.setString(3, q.opt2);
-                ps.setString(4, q.opt3);
-                ps.setString(5, q.opt4);
-                ps.setInt(6, q.correctIndex);
-                ps.executeUpdate();
-                return true;
+    // Save question to DB or CSV; returns it under the id storage gave it, or null on failure
+    private Question saveQuestion(Question q) {
+        if (dbAvailable && db != null) {
+            try {
+                return q.withId(db.insertQuestion(q));
             } catch (SQLException e) {
                 println("DB save question failed: " + e.getMessage());
-                return false;
+                return null;
             }
         } else {
-            // append to QUESTIONS_CSV
             try {
-                if (!Files.exists(QUESTIONS_CSV)) {
-                    try (BufferedWriter w = Files.newBufferedWriter(QUESTIONS_CSV, StandardCharsets.UTF_8, StandardOpenOption.CREATE)) {
-                        w.write("id,question,opt1,opt2,opt3,opt4,answerIndex");
-                        w.newLine();
-                    }
-                }
-                List<Question> list = loadAllQuestions(); // to compute next id
-                int nextId = list.stream().mapToInt(qx -> qx.id).max().orElse(0) + 1;
-                String line = nextId + "," + q.toCsvLineNoId();
-                Files.write(QUESTIONS_CSV, Collections.singletonList(line), StandardCharsets.UTF_8, Files.exists(QUESTIONS_CSV) ? StandardOpenOption.APPEND : StandardOpenOption.CREATE);
-                return true;
+                return q.withId(questionFile.append(q));
             } catch (IOException e) {
                 println("CSV save question failed: " + e.getMessage());
-                return false;
+                return null;
             }
         }
     }
 
+    /** The current snapshot, loaded from storage on first use. */
+    private QuestionBank bank() {
+        QuestionBank b = bank.get();
+        if (b == null) {
+            bank.compareAndSet(null, new QuestionBank(loadAllQuestions()));
+            b = bank.get();
+        }
+        return b;
+    }
+
+    /**
+     * Rebuilds the snapshot from storage and swaps it in; quizzes already running keep the one they started with.
+     * Only for reload and import: a single add or delete derives the next snapshot from the current one.
+     */
+    private QuestionBank refreshBank() {
+        QuestionBank b = new QuestionBank(loadAllQuestions());
+        bank.set(b);
+        return b;
+    }
+
     // Load all questions
     private List<Question> loadAllQuestions() {
-        if (dbAvailable && conn != null) {
-            List<Question> out = new ArrayList<>();
-            String sql = "SELECT id,question,opt1,opt2,opt3,opt4,answer_index FROM questions ORDER BY id ASC;";
-            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
-                while (rs.next()) {
-                    int id = rs.getInt(1);
-                    String question = rs.getString(2);
-                    String opt1 = rs.getString(3);
-                    String opt2 = rs.getString(4);
-                    String opt3 = rs.getString(5);
-                    String opt4 = rs.getString(6);
-                    int idx = rs.getInt(7);
-                    out.add(new Question(id, question, opt1, opt2, opt3, opt4, idx));
-                }
+        if (dbAvailable && db != null) {
+            try {
+                return db.loadQuestions();
             } catch (SQLException e) {
                 println("DB load questions failed: " + e.getMessage());
+                return new ArrayList<>();
             }
-            return out;
         } else {
-            // read CSV
-            List<Question> out = new ArrayList<>();
-            if (!Files.exists(QUESTIONS_CSV)) return out;
-            try (BufferedReader r = Files.newBufferedReader(QUESTIONS_CSV, StandardCharsets.UTF_8)) {
-                String header = r.readLine(); // skip header
-                String ln;
-                while ((ln = r.readLine()) != null) {
-                    if (ln.trim().isEmpty()) continue;
-                    // naive CSV parsing (we escape quotes when writing)
-                    String[] parts = splitCsvLine(ln, 7);
-                    if (parts.length >= 7) {
-                        int id = Integer.parseInt(parts[0]);
-                        String question = parts[1];
-                        String opt1 = parts[2], opt2 = parts[3], opt3 = parts[4], opt4 = parts[5];
-                        int idx = Integer.parseInt(parts[6]);
-                        out.add(new Question(id, question, opt1, opt2, opt3, opt4, idx));
-                    }
-                }
-            } catch (IOException e) {
+            try {
+                return questionFile.load();
+            } catch (IOException | RuntimeException e) {
                 println("CSV read failed: " + e.getMessage());
+                return new ArrayList<>();
             }
-            return out;
         }
     }
 
     // Delete a question by id
     private boolean deleteQuestionById(int id) {
-        if (dbAvailable && conn != null) {
-            String sql = "DELETE FROM questions WHERE id = ?;";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, id);
-                int affected = ps.executeUpdate();
-                return affected > 0;
+        if (dbAvailable && db != null) {
+            try {
+                return db.deleteQuestion(id);
             } catch (SQLException e) {
                 println("DB delete failed: " + e.getMessage());
                 return false;
             }
         } else {
-            // rewrite CSV without the id
-            List<Question> list = loadAllQuestions();
-            boolean found = list.removeIf(q -> q.id == id);
-            if (!found) return false;
-            try (BufferedWriter w = Files.newBufferedWriter(QUESTIONS_CSV, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                w.write("id,question,opt1,opt2,opt3,opt4,answerIndex");
-                w.newLine();
-                for (Question q : list) {
-                    w.write(q.toCsvLine());
-                    w.newLine();
-                }
-                return true;
+            try {
+                return questionFile.delete(id);
             } catch (IOException e) {
-                println("CSV rewrite failed: " + e.getMessage());
+                println("CSV delete failed: " + e.getMessage());
                 return false;
             }
         }
@@ -379,30 +417,13 @@ public class OnlineQuizApp {
 
     // Store quiz result
     private boolean storeResult(QuizResult result) {
-        if (dbAvailable && conn != null) {
-            String sql = "INSERT INTO results (username,score,total,datetime) VALUES (?,?,?,?);";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, result.username);
-                ps.setInt(2, result.score);
-                ps.setInt(3, result.totalQuestions);
-                ps.setString(4, result.dateTime.format(DT_FMT));
-                ps.executeUpdate();
-                return true;
-            } catch (SQLException e) {
-                println("DB save result failed: " + e.getMessage());
-                return false;
-            }
+        if (dbAvailable && db != null) {
+            // queued for the writer thread, which commits it within RESULT_BATCH_MILLIS
+            return db.submitResult(result);
         } else {
             // append to CSV
             try {
-                if (!Files.exists(RESULTS_CSV)) {
-                    try (BufferedWriter w = Files.newBufferedWriter(RESULTS_CSV, StandardCharsets.UTF_8, StandardOpenOption.CREATE)) {
-                        w.write("username,score,total,datetime");
-                        w.newLine();
-                    }
-                }
-                String line = escapeCsv(result.username) + "," + result.score + "," + result.totalQuestions + "," + result.dateTime.format(DT_FMT);
-                Files.write(RESULTS_CSV, Collections.singletonList(line), StandardCharsets.UTF_8, Files.exists(RESULTS_CSV) ? StandardOpenOption.APPEND : StandardOpenOption.CREATE);
+                appendResults(RESULTS_CSV, Collections.singletonList(result));
                 return true;
             } catch (IOException e) {
                 println("CSV save result failed: " + e.getMessage());
@@ -411,6 +432,1211 @@ public class OnlineQuizApp {
         }
     }
 
+    /** Appends results to the CSV, writing the header first if the file is new. */
+    private static void appendResults(Path path, List<QuizResult> results) throws IOException {
+        boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+        try (Csv.Writer w = Csv.Writer.append(path)) {
+            if (fresh) w.record("username", "score", "total", "datetime");
+            for (QuizResult r : results) {
+                w.field(r.username).field(r.score).field(r.totalQuestions).field(r.dateTime.format(DT_FMT)).endRecord();
+            }
+        }
+    }
+
+    // === SQLite persistence ===
+
+    /**
+     * The SQLite side of the app. The database file is put in WAL mode so
+     * readers never wait for the result writer and a commit costs one append
+     * to the log rather than a rewrite of the pages. There are two
+     * connections: this one, used by the menus and holding its prepared
+     * statements for the life of the app, and the ResultWriter's own.
+     * SQLite admits one writer at a time, so a larger pool would not add
+     * write throughput; busy_timeout covers the rare overlap of an admin
+     * edit with a result commit.
+     */
+    static final class QuizDb implements AutoCloseable {
+        private static final String INSERT_QUESTION = "INSERT INTO questions (question,opt1,opt2,opt3,opt4,answer_index,topic,difficulty) VALUES (?,?,?,?,?,?,?,?);";
+        private static final String SELECT_QUESTIONS = "SELECT id,question,opt1,opt2,opt3,opt4,answer_index,topic,difficulty FROM questions ORDER BY id ASC;";
+        private static final String DELETE_QUESTION = "DELETE FROM questions WHERE id = ?;";
+        private static final String LAST_ID = "SELECT last_insert_rowid();";
+        private static final String INSERT_RESULT = "INSERT INTO results (username,score,total,datetime) VALUES (?,?,?,?);";
+        private static final int IMPORT_BATCH = 1000;
+
+        private final Connection conn;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final ResultWriter results;
+
+        private QuizDb(Connection conn, ResultWriter results) {
+            this.conn = conn;
+            this.results = results;
+        }
+
+        static QuizDb open(String url, int batchSize, long batchMillis) throws SQLException {
+            Connection conn = DriverManager.getConnection(url);
+            Connection writer = null;
+            try {
+                configure(conn);
+                conn.setAutoCommit(true);
+                ensureTables(conn);
+                writer = DriverManager.getConnection(url);
+                configure(writer);
+                writer.setAutoCommit(false);
+                return new QuizDb(conn, new ResultWriter(writer, batchSize, batchMillis));
+            } catch (SQLException | RuntimeException e) {
+                closeQuietly(writer);
+                closeQuietly(conn);
+                throw e;
+            }
+        }
+
+        private static void configure(Connection c) throws SQLException {
+            try (Statement st = c.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL;");
+                // in WAL mode NORMAL stays consistent after a crash; only the last commits may be lost on power failure
+                st.execute("PRAGMA synchronous=NORMAL;");
+                st.execute("PRAGMA busy_timeout=5000;");
+            }
+        }
+
+        private static void ensureTables(Connection c) throws SQLException {
+            try (Statement st = c.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS questions (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "question TEXT NOT NULL," +
+                        "opt1 TEXT, opt2 TEXT, opt3 TEXT, opt4 TEXT," +
+                        "answer_index INTEGER NOT NULL," +
+                        "topic TEXT NOT NULL DEFAULT ''," +
+                        "difficulty TEXT NOT NULL DEFAULT ''" +
+                        ");");
+                // databases created before topics and difficulty existed
+                Set<String> columns = new HashSet<>();
+                try (ResultSet rs = st.executeQuery("PRAGMA table_info(questions);")) {
+                    while (rs.next()) columns.add(rs.getString("name"));
+                }
+                for (String col : new String[] { "topic", "difficulty" }) {
+                    if (!columns.contains(col)) st.execute("ALTER TABLE questions ADD COLUMN " + col + " TEXT NOT NULL DEFAULT '';");
+                }
+                st.execute("CREATE TABLE IF NOT EXISTS results (" +
+                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                        "username TEXT NOT NULL," +
+                        "score INTEGER NOT NULL," +
+                        "total INTEGER NOT NULL," +
+                        "datetime TEXT NOT NULL" +
+                        ");");
+            }
+        }
+
+        /** The cached statement for sql, prepared on first use. */
+        private PreparedStatement statement(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        /** Inserts q and returns the id SQLite assigned to it. */
+        int insertQuestion(Question q) throws SQLException {
+            PreparedStatement ps = statement(INSERT_QUESTION);
+            ps.setString(1, q.question);
+            ps.setString(2, q.opt1);
+            ps.setString(3, q.opt2);
+            ps.setString(4, q.opt3);
+            ps.setString(5, q.opt4);
+            ps.setInt(6, q.correctIndex);
+            ps.setString(7, q.topic);
+            ps.setString(8, q.difficulty);
+            ps.executeUpdate();
+            try (ResultSet rs = statement(LAST_ID).executeQuery()) {
+                if (!rs.next()) throw new SQLException("No id returned for the new question");
+                return rs.getInt(1);
+            }
+        }
+
+        List<Question> loadQuestions() throws SQLException {
+            List<Question> out = new ArrayList<>();
+            try (ResultSet rs = statement(SELECT_QUESTIONS).executeQuery()) {
+                while (rs.next()) {
+                    out.add(new Question(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                            rs.getString(5), rs.getString(6), rs.getInt(7), rs.getString(8), rs.getString(9)));
+                }
+            }
+            return out;
+        }
+
+        /** Inserts every question in one transaction, executing in batches; returns the number inserted. */
+        int insertQuestions(Iterator<Question> questions) throws SQLException {
+            PreparedStatement ps = statement(INSERT_QUESTION);
+            int n = 0;
+            conn.setAutoCommit(false);
+            try {
+                while (questions.hasNext()) {
+                    Question q = questions.next();
+                    ps.setString(1, q.question);
+                    ps.setString(2, q.opt1);
+                    ps.setString(3, q.opt2);
+                    ps.setString(4, q.opt3);
+                    ps.setString(5, q.opt4);
+                    ps.setInt(6, q.correctIndex);
+                    ps.setString(7, q.topic);
+                    ps.setString(8, q.difficulty);
+                    ps.addBatch();
+                    if (++n % IMPORT_BATCH == 0) ps.executeBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                return n;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    ps.clearBatch();
+                    conn.rollback();
+                } catch (SQLException ignored) {}
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        boolean deleteQuestion(int id) throws SQLException {
+            PreparedStatement ps = statement(DELETE_QUESTION);
+            ps.setInt(1, id);
+            return ps.executeUpdate() > 0;
+        }
+
+        /** Queues a result for the writer; false once the database is closing. */
+        boolean submitResult(QuizResult r) {
+            return results.submit(r);
+        }
+
+        @Override public void close() {
+            results.close();
+            for (PreparedStatement ps : statements.values()) closeQuietly(ps);
+            statements.clear();
+            closeQuietly(conn);
+        }
+    }
+
+    /**
+     * Group-commits quiz results on a connection of its own. The first
+     * result to arrive opens a batch; the batch is committed as one
+     * transaction when it reaches batchSize or batchMillis after it opened,
+     * so a burst of submissions costs one fsync per batch rather than one per
+     * row, and a lone result still lands within batchMillis. A failed batch
+     * is rolled back and retried a few times before it is reported lost.
+     */
+    static final class ResultWriter implements AutoCloseable {
+        private static final QuizResult STOP = new QuizResult("", 0, 0, null);
+        private static final int ATTEMPTS = 3;
+
+        private final Connection conn;
+        private final PreparedStatement insert;
+        private final int batchSize;
+        private final long batchNanos;
+        private final BlockingQueue<QuizResult> queue = new LinkedBlockingQueue<>();
+        private final Thread thread = new Thread(this::run, "quiz-result-writer");
+        private final AtomicLong written = new AtomicLong(), lost = new AtomicLong();
+        private volatile boolean closed;
+
+        ResultWriter(Connection conn, int batchSize, long batchMillis) throws SQLException {
+            this.conn = conn;
+            this.insert = conn.prepareStatement(QuizDb.INSERT_RESULT);
+            this.batchSize = Math.max(1, batchSize);
+            this.batchNanos = TimeUnit.MILLISECONDS.toNanos(batchMillis);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean submit(QuizResult r) {
+            if (closed) return false;
+            queue.add(r);
+            return true;
+        }
+
+        long written() { return written.get(); }
+
+        long lost() { return lost.get(); }
+
+        /** Stops accepting results, then waits for everything already queued to be committed. */
+        @Override public void close() {
+            if (closed) return;
+            closed = true;
+            queue.add(STOP);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (lost.get() > 0) System.err.println("[ERROR] " + lost.get() + " quiz result(s) could not be saved.");
+            closeQuietly(insert);
+            closeQuietly(conn);
+        }
+
+        private void run() {
+            List<QuizResult> batch = new ArrayList<>(batchSize);
+            boolean stopping = false;
+            while (!stopping) {
+                try {
+                    QuizResult first = queue.take();
+                    if (first == STOP) break;
+                    batch.add(first);
+                    long deadline = System.nanoTime() + batchNanos;
+                    while (batch.size() < batchSize) {
+                        long left = deadline - System.nanoTime();
+                        QuizResult r = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (r == null) break;
+                        if (r == STOP) { stopping = true; break; }
+                        batch.add(r);
+                    }
+                } catch (InterruptedException e) {
+                    stopping = true;
+                }
+                commit(batch);
+                batch.clear();
+            }
+            // a submit can race close(); whatever slipped in behind STOP is still written
+            queue.drainTo(batch);
+            batch.remove(STOP);
+            commit(batch);
+        }
+
+        private void commit(List<QuizResult> batch) {
+            if (batch.isEmpty()) return;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    for (QuizResult r : batch) {
+                        insert.setString(1, r.username);
+                        insert.setInt(2, r.score);
+                        insert.setInt(3, r.totalQuestions);
+                        insert.setString(4, r.dateTime.format(DT_FMT));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                    conn.commit();
+                    written.addAndGet(batch.size());
+                    return;
+                } catch (SQLException e) {
+                    try {
+                        insert.clearBatch();
+                        conn.rollback();
+                    } catch (SQLException ignored) {}
+                    if (attempt == ATTEMPTS) {
+                        System.err.println("[ERROR] DB save results failed: " + e.getMessage());
+                        lost.addAndGet(batch.size());
+                        return;
+                    }
+                    try {
+                        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(batchNanos) + 1);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The CSV counterpart of ResultWriter for server mode: the event loop only
+     * queues a result, and this thread appends whatever has queued up since
+     * its last write with one open of results.csv, so a burst of finishing
+     * quizzes costs one append instead of one per result and the loop never
+     * waits on the disk.
+     */
+    static final class CsvResultWriter implements AutoCloseable {
+        private static final QuizResult STOP = new QuizResult("", 0, 0, null);
+
+        private final Path path;
+        private final BlockingQueue<QuizResult> queue = new LinkedBlockingQueue<>();
+        private final Thread thread = new Thread(this::run, "quiz-csv-writer");
+        private final AtomicLong lost = new AtomicLong();
+        private volatile boolean closed;
+
+        CsvResultWriter(Path path) {
+            this.path = path;
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean submit(QuizResult r) {
+            if (closed) return false;
+            queue.add(r);
+            return true;
+        }
+
+        /** Stops accepting results, then waits for everything already queued to be written. */
+        @Override public void close() {
+            if (closed) return;
+            closed = true;
+            queue.add(STOP);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (lost.get() > 0) System.err.println("[ERROR] " + lost.get() + " quiz result(s) could not be saved.");
+        }
+
+        private void run() {
+            List<QuizResult> batch = new ArrayList<>();
+            boolean stopping = false;
+            while (!stopping) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    stopping = true;
+                }
+                queue.drainTo(batch);
+                stopping |= batch.remove(STOP);
+                write(batch);
+                batch.clear();
+            }
+            // a submit can race close(); whatever slipped in behind STOP is still written
+            queue.drainTo(batch);
+            write(batch);
+        }
+
+        private void write(List<QuizResult> batch) {
+            if (batch.isEmpty()) return;
+            try {
+                appendResults(path, batch);
+            } catch (IOException e) {
+                System.err.println("[ERROR] CSV save results failed: " + e.getMessage());
+                lost.addAndGet(batch.size());
+            }
+        }
+    }
+
+    // === Quiz sessions ===
+
+    /**
+     * One sitting of a quiz: the questions, where the taker is, and the score
+     * so far. An answer counts only if it arrives before the deadline; the
+     * timer that announces the deadline is just a notification, so the score
+     * does not depend on when it fires. Not thread-safe: each session belongs
+     * to one thread (the console, or the server's event loop).
+     */
+    static final class QuizSession {
+        final String username;
+        final List<Question> questions;
+        final long deadline; // System.nanoTime() value
+        private int index, score;
+
+        QuizSession(String username, List<Question> questions, long deadline) {
+            this.username = username;
+            this.questions = questions;
+            this.deadline = deadline;
+        }
+
+        Question current() { return index < questions.size() ? questions.get(index) : null; }
+
+        int number() { return index + 1; }
+
+        boolean isFinished() { return index >= questions.size(); }
+
+        boolean isExpired(long now) { return now - deadline >= 0; }
+
+        /** Scores ans ("1"-"4"; anything else is a skip) against the current question; false, recording nothing, once time is up. */
+        boolean answer(String ans, long now) {
+            if (isFinished() || isExpired(now)) return false;
+            Question q = questions.get(index++);
+            try {
+                if (Integer.parseInt(ans) - 1 == q.correctIndex) score++;
+            } catch (NumberFormatException ignore) { /* invalid -> treat as skip */ }
+            return true;
+        }
+
+        QuizResult result() { return new QuizResult(username, score, questions.size(), LocalDateTime.now()); }
+    }
+
+    /**
+     * Hashed timing wheel: timeouts hash by deadline tick into one of a
+     * power-of-two number of slots, and each tick visits one slot, firing the
+     * entries that are due and leaving those due on a later turn. Scheduling
+     * and cancelling are O(1) and may happen on any thread; new timeouts go
+     * through a queue and are placed by advance(), which runs the tasks and
+     * must always be called from the same thread. Cancelled timeouts are
+     * dropped when their slot next comes round.
+     */
+    static final class TimingWheel {
+        static final class Timeout {
+            final long tick;
+            final Runnable task;
+            Timeout next;
+            volatile boolean cancelled;
+
+            Timeout(long tick, Runnable task) {
+                this.tick = tick;
+                this.task = task;
+            }
+
+            void cancel() { cancelled = true; }
+        }
+
+        private final long tickNanos;
+        private final Timeout[] slots;
+        private final int mask;
+        private final long origin = System.nanoTime();
+        private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+        private long tick; // next tick to process
+
+        TimingWheel(long tickMillis, int slotCount) {
+            this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+            this.slots = new Timeout[Integer.highestOneBit(Math.max(2, slotCount - 1)) << 1];
+            this.mask = slots.length - 1;
+        }
+
+        /** Runs task on the advancing thread at the first tick at or after delayMillis from now. */
+        Timeout schedule(long delayMillis, Runnable task) {
+            long due = System.nanoTime() - origin + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            Timeout t = new Timeout((due + tickNanos - 1) / tickNanos, task);
+            incoming.add(t);
+            return t;
+        }
+
+        /** Fires everything due up to now; returns how many tasks ran. */
+        int advance(long now) {
+            for (Timeout t; (t = incoming.poll()) != null; ) {
+                if (t.cancelled) continue;
+                int slot = (int) (Math.max(t.tick, tick) & mask);
+                t.next = slots[slot];
+                slots[slot] = t;
+            }
+            long target = (now - origin) / tickNanos;
+            int fired = 0;
+            for (; tick <= target; tick++) {
+                int slot = (int) (tick & mask);
+                Timeout prev = null;
+                for (Timeout t = slots[slot]; t != null; t = t.next) {
+                    if (t.cancelled || t.tick <= tick) {
+                        if (prev == null) slots[slot] = t.next; else prev.next = t.next;
+                        if (!t.cancelled) {
+                            fired++;
+                            try {
+                                t.task.run();
+                            } catch (RuntimeException e) {
+                                System.err.println("[ERROR] Timer task failed: " + e);
+                            }
+                        }
+                    } else {
+                        prev = t;
+                    }
+                }
+            }
+            return fired;
+        }
+
+        /** Advances the wheel from a daemon thread of its own, once per tick. */
+        void startTicker(String name) {
+            Thread t = new Thread(() -> {
+                long sleep = Math.max(1, TimeUnit.NANOSECONDS.toMillis(tickNanos));
+                while (true) {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    advance(System.nanoTime());
+                }
+            }, name);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Exam-hall server: one event-loop thread serves every connection
+     * through a Selector, and session deadlines live on a single shared
+     * TimingWheel advanced by the same loop, so sessions need no locking and
+     * thousands of them cost a few objects each rather than threads.
+     *
+     * The protocol is UTF-8 lines on a localhost TCP socket:
+     * <pre>
+     *   client: START name count seconds   server: QUIZ id count seconds, then the first Q
+     *                                      server: Q n question\topt1\topt2\topt3\topt4
+     *   client: A answer  (1-4, or s)      server: the next Q, or DONE score total percent
+     *                                      server: TIMEUP score total percent (when time runs out)
+     *   client: QUIT                       server closes the connection
+     *                                      server: ERR message (bad command; the session is unchanged)
+     * </pre>
+     * A finished, expired or abandoned session is scored from the answers it
+     * received before its deadline and handed to the results consumer, which
+     * must not block the loop. A client that stops reading is closed (and its
+     * session abandoned) once MAX_PENDING_BYTES of replies are queued for it.
+     */
+    static final class QuizServer {
+        private static final int MAX_LINE = 4096;
+        private static final int BACKLOG = 1024;
+        // a client that lets this much unread output pile up is dropped rather than buffered
+        private static final int MAX_PENDING_BYTES = Integer.getInteger("quiz.maxPendingBytes", 64 << 10);
+
+        private final int port;
+        private final Supplier<QuestionBank> bank;
+        private final boolean stratified;
+        private final Consumer<QuizResult> results;
+        private final TimingWheel wheel = new TimingWheel(TICK_MILLIS, WHEEL_SLOTS);
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 << 10);
+        private volatile boolean running = true;
+        private volatile Selector selector;
+        private long nextSessionId = 1;
+        // written by the loop thread, read by stats()
+        private volatile int connections, active;
+        private volatile long completed, timedOut, abandoned, slow;
+
+        QuizServer(int port, Supplier<QuestionBank> bank, boolean stratified, Consumer<QuizResult> results) {
+            this.port = port;
+            this.bank = bank;
+            this.stratified = stratified;
+            this.results = results;
+        }
+
+        String stats() {
+            return "connections " + connections + ", active sessions " + active + ", completed " + completed
+                    + ", timed out " + timedOut + ", abandoned " + abandoned + ", dropped slow " + slow;
+        }
+
+        void stop() {
+            running = false;
+            Selector sel = selector;
+            if (sel != null) sel.wakeup();
+        }
+
+        void run() throws IOException {
+            try (Selector sel = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+                server.configureBlocking(false);
+                server.register(sel, SelectionKey.OP_ACCEPT);
+                selector = sel;
+                println("[INFO] Quiz server listening on " + server.getLocalAddress() + " with " + bank.get().size() + " questions"
+                        + (stratified ? ", sampling across topics and difficulty" : "") + ". Type 'stop' to shut down.");
+                while (running) {
+                    sel.select(TICK_MILLIS);
+                    for (Iterator<SelectionKey> it = sel.selectedKeys().iterator(); it.hasNext(); ) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept(sel, server);
+                            continue;
+                        }
+                        Client c = (Client) key.attachment();
+                        try {
+                            if (key.isReadable()) c.read();
+                            if (key.isValid() && key.isWritable()) c.flush();
+                        } catch (IOException e) {
+                            c.close();
+                        }
+                    }
+                    wheel.advance(System.nanoTime());
+                }
+                for (SelectionKey key : sel.keys()) {
+                    if (key.attachment() instanceof Client) ((Client) key.attachment()).close();
+                }
+            }
+        }
+
+        private void accept(Selector sel, ServerSocketChannel server) throws IOException {
+            for (SocketChannel ch; (ch = server.accept()) != null; ) {
+                ch.configureBlocking(false);
+                ch.socket().setTcpNoDelay(true);
+                Client c = new Client(ch);
+                c.key = ch.register(sel, SelectionKey.OP_READ, c);
+                connections++;
+            }
+        }
+
+        /** One connection; touched only by the loop thread. */
+        private final class Client {
+            private final SocketChannel ch;
+            private SelectionKey key;
+            private byte[] line = new byte[128];
+            private int lineLen;
+            private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+            private int pendingBytes;
+            private QuizSession session;
+            private TimingWheel.Timeout timeout;
+
+            Client(SocketChannel ch) { this.ch = ch; }
+
+            void read() throws IOException {
+                readBuffer.clear();
+                int n = ch.read(readBuffer);
+                if (n < 0) { close(); return; }
+                readBuffer.flip();
+                while (readBuffer.hasRemaining() && key.isValid()) {
+                    byte b = readBuffer.get();
+                    if (b == '\n') {
+                        String cmd = new String(line, 0, lineLen, StandardCharsets.UTF_8).strip();
+                        lineLen = 0;
+                        if (!cmd.isEmpty()) handle(cmd);
+                    } else if (lineLen == MAX_LINE) {
+                        send("ERR line too long");
+                        close();
+                    } else {
+                        if (lineLen == line.length) line = Arrays.copyOf(line, Math.min(MAX_LINE, line.length * 2));
+                        line[lineLen++] = b;
+                    }
+                }
+            }
+
+            private void handle(String cmd) throws IOException {
+                String[] f = cmd.split("\\s+");
+                switch (f[0].toUpperCase(Locale.ROOT)) {
+                    case "START" -> start(f);
+                    case "A" -> {
+                        if (session == null) { send("ERR no quiz in progress"); return; }
+                        if (!session.answer(f.length > 1 ? f[1] : "", System.nanoTime())) finish("TIMEUP");
+                        else if (session.isFinished()) finish("DONE");
+                        else sendQuestion();
+                    }
+                    case "QUIT" -> close();
+                    default -> send("ERR unknown command " + f[0]);
+                }
+            }
+
+            private void start(String[] f) throws IOException {
+                if (session != null) { send("ERR quiz already in progress"); return; }
+                if (f.length < 4) { send("ERR usage: START name count seconds"); return; }
+                int count, seconds;
+                try {
+                    count = Integer.parseInt(f[f.length - 2]);
+                    seconds = Integer.parseInt(f[f.length - 1]);
+                } catch (NumberFormatException e) {
+                    send("ERR count and seconds must be numbers");
+                    return;
+                }
+                QuestionBank b = bank.get();
+                if (count < 1 || count > b.size()) { send("ERR count must be 1-" + b.size()); return; }
+                if (seconds < 1 || seconds > 3600) { send("ERR seconds must be 1-3600"); return; }
+                String name = String.join(" ", Arrays.asList(f).subList(1, f.length - 2));
+                Random rnd = ThreadLocalRandom.current();
+                List<Question> quiz = stratified ? b.sampleStratified(count, rnd) : b.sample(count, rnd);
+                QuizSession s = new QuizSession(name, quiz, System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds));
+                session = s;
+                timeout = wheel.schedule(TimeUnit.SECONDS.toMillis(seconds), () -> expire(s));
+                active++;
+                send("QUIZ " + nextSessionId++ + " " + count + " " + seconds);
+                sendQuestion();
+            }
+
+            private void expire(QuizSession s) {
+                if (session != s) return;
+                try {
+                    finish("TIMEUP");
+                } catch (IOException e) {
+                    close();
+                }
+            }
+
+            private void finish(String outcome) throws IOException {
+                QuizResult r = end();
+                if (outcome.equals("DONE")) completed++; else timedOut++;
+                send(outcome + " " + r.score + " " + r.totalQuestions + " " + r.getPercent());
+            }
+
+            /** Scores and records the session; the result is exact however late the timer ran. */
+            private QuizResult end() {
+                timeout.cancel();
+                QuizResult r = session.result();
+                session = null;
+                active--;
+                results.accept(r);
+                return r;
+            }
+
+            private void sendQuestion() throws IOException {
+                if (session == null) return; // dropped while sending the line before
+                Question q = session.current();
+                send("Q " + session.number() + " " + clean(q.question) + "\t" + clean(q.opt1) + "\t" + clean(q.opt2)
+                        + "\t" + clean(q.opt3) + "\t" + clean(q.opt4));
+            }
+
+            private String clean(String s) {
+                return s == null ? "" : s.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+            }
+
+            private void send(String msg) throws IOException {
+                if (!key.isValid()) return;
+                ByteBuffer buf = ByteBuffer.wrap((msg + "\n").getBytes(StandardCharsets.UTF_8));
+                if (pending.isEmpty()) ch.write(buf);
+                if (buf.hasRemaining()) {
+                    if (pendingBytes + buf.remaining() > MAX_PENDING_BYTES) {
+                        slow++;
+                        close();
+                        return;
+                    }
+                    pending.add(buf);
+                    pendingBytes += buf.remaining();
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+
+            void flush() throws IOException {
+                while (!pending.isEmpty()) {
+                    ByteBuffer buf = pending.peek();
+                    pendingBytes -= ch.write(buf);
+                    if (buf.hasRemaining()) return;
+                    pending.poll();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            }
+
+            void close() {
+                if (session != null) {
+                    end();
+                    abandoned++;
+                }
+                if (key != null && key.isValid()) {
+                    key.cancel();
+                    connections--;
+                }
+                closeQuietly(ch);
+            }
+        }
+    }
+
+    // === Question bank snapshot ===
+
+    /**
+     * Immutable snapshot of every question, shared by all quiz takers. The
+     * app keeps the current one in an AtomicReference and swaps in the next
+     * snapshot after each admin change, so readers never lock or read
+     * storage, and a quiz keeps the snapshot it started with. An add or
+     * delete derives the next snapshot with with()/without(), copying the
+     * question list and the one stratum it touches; the other strata are
+     * shared. Storage is read again only on reload and after an import.
+     *
+     * Sampling k questions is O(k): a Fisher-Yates shuffle that stops after
+     * k swaps, recording only the swapped positions so the shared list is
+     * never touched. Stratified sampling splits k across the (topic,
+     * difficulty) strata in proportion to their sizes, largest remainders
+     * taking the leftover places, then samples each stratum the same way.
+     */
+    static final class QuestionBank {
+        private final List<Question> all;          // id order
+        private final List<List<Question>> strata; // by Question.stratum(), first-seen order
+
+        QuestionBank(List<Question> questions) {
+            this.all = List.copyOf(questions);
+            Map<String, List<Question>> groups = new LinkedHashMap<>();
+            for (Question q : all) groups.computeIfAbsent(q.stratum(), k -> new ArrayList<>()).add(q);
+            List<List<Question>> s = new ArrayList<>(groups.size());
+            for (List<Question> g : groups.values()) s.add(List.copyOf(g));
+            this.strata = List.copyOf(s);
+        }
+
+        private QuestionBank(List<Question> all, List<List<Question>> strata) {
+            this.all = all;
+            this.strata = strata;
+        }
+
+        /** This snapshot plus q, which has a new (highest) id. */
+        QuestionBank with(Question q) {
+            List<Question> a = new ArrayList<>(all.size() + 1);
+            a.addAll(all);
+            a.add(q);
+            List<List<Question>> s = new ArrayList<>(strata);
+            int i = stratumOf(q);
+            if (i < 0) {
+                s.add(List.of(q));
+            } else {
+                List<Question> g = new ArrayList<>(strata.get(i).size() + 1);
+                g.addAll(strata.get(i));
+                g.add(q);
+                s.set(i, List.copyOf(g));
+            }
+            return new QuestionBank(List.copyOf(a), List.copyOf(s));
+        }
+
+        /** This snapshot without question id; itself if there is no such question. */
+        QuestionBank without(int id) {
+            Question q = null;
+            for (Question c : all) if (c.id == id) { q = c; break; }
+            if (q == null) return this;
+            List<Question> a = new ArrayList<>(all);
+            a.remove(q);
+            List<List<Question>> s = new ArrayList<>(strata);
+            int i = stratumOf(q);
+            List<Question> g = new ArrayList<>(strata.get(i));
+            g.remove(q);
+            if (g.isEmpty()) s.remove(i);
+            else s.set(i, List.copyOf(g));
+            return new QuestionBank(List.copyOf(a), List.copyOf(s));
+        }
+
+        private int stratumOf(Question q) {
+            String key = q.stratum();
+            for (int i = 0; i < strata.size(); i++) if (strata.get(i).get(0).stratum().equals(key)) return i;
+            return -1;
+        }
+
+        int size() { return all.size(); }
+
+        int strataCount() { return strata.size(); }
+
+        List<Question> all() { return all; }
+
+        /** k distinct questions in random order. */
+        List<Question> sample(int k, Random rnd) {
+            k = Math.min(k, all.size());
+            List<Question> out = new ArrayList<>(k);
+            pick(all, k, rnd, out);
+            return out;
+        }
+
+        /** k distinct questions, each stratum represented in proportion to its size, in random order. */
+        List<Question> sampleStratified(int k, Random rnd) {
+            int n = all.size();
+            k = Math.min(k, n);
+            int[] take = new int[strata.size()];
+            double[] remainder = new double[strata.size()];
+            int assigned = 0;
+            for (int i = 0; i < take.length; i++) {
+                double exact = (double) k * strata.get(i).size() / n;
+                take[i] = (int) exact;
+                remainder[i] = exact - take[i];
+                assigned += take[i];
+            }
+            if (assigned < k) {
+                Integer[] order = new Integer[take.length];
+                for (int i = 0; i < order.length; i++) order[i] = i;
+                Arrays.sort(order, (a, b) -> Double.compare(remainder[b], remainder[a]));
+                for (int i = 0; assigned < k; i++) {
+                    take[order[i]]++;
+                    assigned++;
+                }
+            }
+            List<Question> out = new ArrayList<>(k);
+            for (int i = 0; i < take.length; i++) pick(strata.get(i), take[i], rnd, out);
+            Collections.shuffle(out, rnd);
+            return out;
+        }
+
+        private static void pick(List<Question> from, int k, Random rnd, List<Question> out) {
+            int n = from.size();
+            Map<Integer, Integer> swapped = new HashMap<>(Math.max(4, k * 2));
+            for (int i = 0; i < k; i++) {
+                int j = i + rnd.nextInt(n - i);
+                out.add(from.get(swapped.getOrDefault(j, j)));
+                swapped.put(j, swapped.getOrDefault(i, i));
+            }
+        }
+    }
+
+    // === CSV question store ===
+
+    /**
+     * Parses question rows lazily from a CSV reader, so an import never holds
+     * more than the current row. Rows that do not parse are counted in
+     * skipped; a header row is skipped silently.
+     */
+    static final class QuestionRows implements Iterator<Question> {
+        private final Csv.Reader r;
+        private Question next;
+        int skipped;
+
+        QuestionRows(Csv.Reader r) { this.r = r; }
+
+        @Override public boolean hasNext() {
+            try {
+                while (next == null && r.next()) {
+                    if (r.isBlank()) continue;
+                    int n = r.fieldCount();
+                    if (r.recordNumber() == 1 && (r.fieldEqualsIgnoreCase(0, "id") || r.fieldEqualsIgnoreCase(0, "question"))) continue;
+                    int f = n == 7 || n >= 9 ? 1 : 0; // leading id column (6 or 8 columns without it)
+                    try {
+                        if (n < 6) throw new NumberFormatException();
+                        int idx = r.intField(f + 5);
+                        if (idx < 0 || idx > 3 || r.field(f).length() == 0) throw new NumberFormatException();
+                        next = new Question(-1, r.string(f), r.string(f + 1), r.string(f + 2), r.string(f + 3), r.string(f + 4), idx,
+                                r.string(f + 6).trim(), r.string(f + 7).trim());
+                    } catch (NumberFormatException e) {
+                        skipped++;
+                    }
+                }
+                return next != null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override public Question next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Question q = next;
+            next = null;
+            return q;
+        }
+    }
+
+    /**
+     * questions.csv as an append-only log. A new question is one appended
+     * row on a writer kept open for the session; its id comes from a
+     * high-water mark, so nothing is re-read to number it. A delete appends
+     * a tombstone row "-,id". Once tombstoned rows outnumber live ones, a
+     * background thread rewrites the file without them.
+     *
+     * The mark lives in questions.csv.hwm as "nextId,length", where length
+     * is the size of questions.csv when the mark was written. On open, only
+     * the bytes past that length are scanned for higher ids, which covers
+     * rows appended after the last clean close. A file shorter than the
+     * recorded length has been rewritten elsewhere, so it is scanned in full.
+     * Compaction works on the bytes that existed when it started, then
+     * copies over whatever was appended meanwhile before swapping files.
+     */
+    static final class QuestionFile implements Closeable {
+        static final String HEADER = "id,question,opt1,opt2,opt3,opt4,answerIndex,topic,difficulty";
+        private static final String TOMBSTONE = "-";
+        private static final int MIN_COMPACT = 1000;
+
+        private final Path path, mark;
+        private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "quiz-csv-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        private Csv.Writer out;        // open append writer, null until first write
+        private int nextId;
+        private Set<Integer> live;     // ids of live questions, null until first load
+        private long deadRows;         // tombstones plus the rows they cancel, once live is known
+        private boolean compacting;
+        private final Object compactLock = new Object(); // one compaction at a time: they share the tmp file
+
+        QuestionFile(Path path) {
+            this.path = path;
+            this.mark = markFor(path);
+            this.nextId = recoverNextId();
+        }
+
+        private static Path markFor(Path path) {
+            return path.resolveSibling(path.getFileName() + ".hwm");
+        }
+
+        /** Drops the mark after questions.csv has been rewritten outside this class. */
+        static void forget(Path path) throws IOException {
+            Files.deleteIfExists(markFor(path));
+        }
+
+        /** Appends q under the next id and returns that id. */
+        synchronized int append(Question q) throws IOException {
+            int id = nextId++;
+            writeRow(id, q);
+            out.flush();
+            return id;
+        }
+
+        /** Appends every question through the open writer, flushing once at the end. */
+        synchronized int appendAll(Iterator<Question> questions) throws IOException {
+            int n = 0;
+            try {
+                while (questions.hasNext()) {
+                    writeRow(nextId++, questions.next());
+                    n++;
+                }
+            } finally {
+                if (out != null) out.flush();
+                writeMark();
+            }
+            return n;
+        }
+
+        synchronized List<Question> load() throws IOException {
+            if (out != null) out.flush();
+            Map<Integer, Question> byId = new LinkedHashMap<>();
+            long rows = 0;
+            if (Files.exists(path)) {
+                try (Csv.Reader r = Csv.Reader.open(path)) {
+                    while (r.next()) {
+                        if (r.isBlank() || r.fieldEquals(0, "id")) continue;
+                        try {
+                            if (r.fieldEquals(0, TOMBSTONE)) {
+                                if (r.fieldCount() >= 2) byId.remove(r.intField(1));
+                                rows++;
+                            } else if (r.fieldCount() >= 7) {
+                                int id = r.intField(0);
+                                byId.put(id, new Question(id, r.string(1), r.string(2), r.string(3), r.string(4), r.string(5), r.intField(6),
+                                        r.string(7), r.string(8)));
+                                rows++;
+                            }
+                        } catch (NumberFormatException ignored) {
+                            // hand-edited row; leave it for the user to fix
+                        }
+                    }
+                }
+            }
+            live = new HashSet<>(byId.keySet());
+            deadRows = rows - live.size();
+            return new ArrayList<>(byId.values());
+        }
+
+        /** Appends a tombstone; false if no live question has this id. */
+        synchronized boolean delete(int id) throws IOException {
+            if (live == null) load();
+            if (!live.remove(id)) return false;
+            ensureOpen();
+            out.field(TOMBSTONE).field(id).endRecord();
+            out.flush();
+            deadRows += 2;
+            if (!compacting && deadRows > Math.max(MIN_COMPACT, live.size())) {
+                compacting = true;
+                compactor.execute(() -> {
+                    try {
+                        compact();
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("[ERROR] Compacting " + path + " failed: " + e);
+                    } finally {
+                        synchronized (this) {
+                            compacting = false;
+                        }
+                    }
+                });
+            }
+            return true;
+        }
+
+        /** Rewrites the file without deleted questions; appends may continue meanwhile. */
+        void compact() throws IOException {
+            synchronized (compactLock) {
+                compactExclusive();
+            }
+        }
+
+        private void compactExclusive() throws IOException {
+            long cut;
+            synchronized (this) {
+                if (out != null) out.flush();
+                if (!Files.exists(path)) return;
+                cut = Files.size(path);
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            long dropped = 0;
+            try {
+                try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, 0, cut);
+                    Set<Integer> deleted = new HashSet<>();
+                    try (Csv.Reader r = Csv.Reader.of(head)) {
+                        while (r.next()) {
+                            if (r.fieldEquals(0, TOMBSTONE) && r.fieldCount() >= 2) {
+                                int id = idOrMinus(r, 1);
+                                if (id >= 0) deleted.add(id);
+                            }
+                        }
+                    }
+                    try (Csv.Reader r = Csv.Reader.of(head); Csv.Writer w = Csv.Writer.create(tmp)) {
+                        w.record(HEADER.split(","));
+                        while (r.next()) {
+                            if (r.isBlank() || r.fieldEquals(0, "id")) continue;
+                            // rows load() skips as hand-edited are copied through for the user to fix
+                            boolean tombstone = r.fieldEquals(0, TOMBSTONE);
+                            int id = tombstone ? idOrMinus(r, 1) : r.fieldCount() >= 7 ? idOrMinus(r, 0) : -1;
+                            if (id >= 0 && (tombstone || deleted.contains(id))) {
+                                dropped++;
+                                continue;
+                            }
+                            for (int i = 0; i < r.fieldCount(); i++) w.field(r.field(i));
+                            w.endRecord();
+                        }
+                    }
+                }
+                synchronized (this) {
+                    if (out != null) {
+                        out.close();
+                        out = null;
+                    }
+                    try (FileChannel src = FileChannel.open(path, StandardOpenOption.READ);
+                         FileChannel dst = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                        long size = src.size();
+                        for (long pos = cut; pos < size; ) pos += src.transferTo(pos, size - pos, dst);
+                    }
+                    Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    if (live != null) deadRows = Math.max(0, deadRows - dropped);
+                    writeMark();
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+        }
+
+        /** Field i as a non-negative id, or -1 if it is not one. */
+        private static int idOrMinus(Csv.Reader r, int i) {
+            try {
+                return Math.max(-1, r.intField(i));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        @Override public void close() throws IOException {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                if (out != null) {
+                    out.close();
+                    out = null;
+                }
+                writeMark();
+            }
+        }
+
+        private void writeRow(int id, Question q) throws IOException {
+            ensureOpen();
+            q.writeTo(out, id);
+            if (live != null) live.add(id);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (out != null) return;
+            boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+            out = Csv.Writer.append(path);
+            if (fresh) out.record(HEADER.split(","));
+        }
+
+        private void writeMark() throws IOException {
+            long length = Files.exists(path) ? Files.size(path) : 0;
+            Path tmp = mark.resolveSibling(mark.getFileName() + ".tmp");
+            Files.writeString(tmp, nextId + "," + length + "\n", StandardCharsets.UTF_8);
+            Files.move(tmp, mark, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        private int recoverNextId() {
+            int next = 1;
+            long from = 0;
+            try {
+                long size = Files.exists(path) ? Files.size(path) : 0;
+                try {
+                    if (Files.exists(mark)) {
+                        String[] f = Files.readString(mark, StandardCharsets.UTF_8).trim().split(",");
+                        long length = Long.parseLong(f[1]);
+                        if (length <= size) {
+                            next = Integer.parseInt(f[0]);
+                            from = length;
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("[WARN] Ignoring unreadable " + mark + ": " + e.getMessage());
+                }
+                if (from < size) {
+                    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+                         Csv.Reader r = Csv.Reader.of(ch.map(FileChannel.MapMode.READ_ONLY, from, size - from))) {
+                        while (r.next()) {
+                            if (r.fieldCount() < 7 || r.fieldEquals(0, TOMBSTONE) || r.fieldEquals(0, "id")) continue;
+                            try {
+                                next = Math.max(next, r.intField(0) + 1);
+                            } catch (NumberFormatException ignored) {}
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read " + path, e);
+            }
+            return next;
+        }
+    }
+
     // === Utilities ===
 
     private static void closeQuietly(AutoCloseable ac) {
@@ -438,46 +1664,16 @@ public class OnlineQuizApp {
         }
     }
 
-    // naive CSV splitting that handles quoted fields (simple)
-    private static String[] splitCsvLine(String line, int expectedColumns) {
-        List<String> cols = new ArrayList<>(expectedColumns);
-        StringBuilder cur = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i = 0; i < line.length(); ++i) {
-            char c = line.charAt(i);
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    cur.append('"'); // escaped quote
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == ',' && !inQuotes) {
-                cols.add(cur.toString());
-                cur.setLength(0);
-            } else {
-                cur.append(c);
-            }
-        }
-        cols.add(cur.toString());
-        return cols.toArray(new String[0]);
-    }
-
-    private static String escapeCsv(String s) {
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            return "\"" + s.replace("\"", "\"\"") + "\"";
-        }
-        return s;
-    }
-
     // === Data classes ===
     private static class Question {
         final int id;
         final String question;
         final String opt1, opt2, opt3, opt4;
         final int correctIndex;
+        final String topic, difficulty; // "" when not set
 
-        Question(int id, String question, String opt1, String opt2, String opt3, String opt4, int correctIndex) {
+        Question(int id, String question, String opt1, String opt2, String opt3, String opt4, int correctIndex,
+                 String topic, String difficulty) {
             this.id = id;
             this.question = question;
             this.opt1 = opt1;
@@ -485,19 +1681,30 @@ public class OnlineQuizApp {
             this.opt3 = opt3;
             this.opt4 = opt4;
             this.correctIndex = correctIndex;
+            this.topic = topic == null ? "" : topic;
+            this.difficulty = difficulty == null ? "" : difficulty;
         }
 
-        String toDisplayString() {
-            return String.format("[%d] %s\n 1) %s\n 2) %s\n 3) %s\n 4) %s\n (answer: %d)",
-                    id, question, opt1, opt2, opt3, opt4, correctIndex + 1);
+        Question withId(int id) {
+            return new Question(id, question, opt1, opt2, opt3, opt4, correctIndex, topic, difficulty);
+        }
+
+        /** Questions sharing a topic and difficulty (ignoring case) form one stratum for sampling. */
+        String stratum() {
+            return topic.toLowerCase(Locale.ROOT) + '\u0000' + difficulty.toLowerCase(Locale.ROOT);
         }
 
-        String toCsvLine() {
-            return id + "," + toCsvLineNoId();
+        String toDisplayString() {
+            String tags = topic.isEmpty() && difficulty.isEmpty() ? ""
+                    : "\n (topic: " + (topic.isEmpty() ? "-" : topic) + ", difficulty: " + (difficulty.isEmpty() ? "-" : difficulty) + ")";
+            return String.format("[%d] %s\n 1) %s\n 2) %s\n 3) %s\n 4) %s\n (answer: %d)%s",
+                    id, question, opt1, opt2, opt3, opt4, correctIndex + 1, tags);
         }
 
-        String toCsvLineNoId() {
-            return escapeCsv(question) + "," + escapeCsv(opt1) + "," + escapeCsv(opt2) + "," + escapeCsv(opt3) + "," + escapeCsv(opt4) + "," + correctIndex;
+        /** One questions.csv row (see QuestionFile.HEADER) under the given id. */
+        void writeTo(Csv.Writer w, int id) throws IOException {
+            w.field(id).field(question).field(opt1).field(opt2).field(opt3).field(opt4).field(correctIndex)
+                    .field(topic).field(difficulty).endRecord();
         }
     }
 
@@ -523,6 +1730,18 @@ public class OnlineQuizApp {
     // === MAIN ===
     public static void main(String[] args) {
         OnlineQuizApp app = new OnlineQuizApp();
-        app.run();
+        try {
+            List<String> opts = Arrays.asList(args);
+            if (opts.contains("--serve")) {
+                boolean stratified = opts.contains("--stratified");
+                int port = DEFAULT_PORT;
+                for (String a : args) if (a.matches("\\d+")) port = Integer.parseInt(a);
+                app.serve(port, stratified);
+            } else {
+                app.run();
+            }
+        } finally {
+            app.close();
+        }
     }
 }
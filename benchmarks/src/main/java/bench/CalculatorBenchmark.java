@@ -0,0 +1,60 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Calculator.evaluateExpression and its stages: cached, uncached and interpreter-only. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalculatorBenchmark {
+
+    private static final String CALC = "Calculator";
+    private static final String COMPILED = "Calculator$CompiledExpression";
+    private static final String PROGRAM = "Calculator$Program";
+
+    // Calculator.evaluate(String, boolean): what evaluateExpression runs on "="
+    private static final MethodHandle EVALUATE = Hooks.staticMethod(CALC, "evaluate",
+            MethodType.methodType(double.class, String.class, boolean.class), String.class, boolean.class);
+    private static final MethodHandle PARSE = Hooks.staticMethod(COMPILED, "parse",
+            MethodType.methodType(Object.class, String.class), String.class);
+    private static final MethodHandle PROGRAM_OF = Hooks.getter(COMPILED, "program",
+            MethodType.methodType(Object.class, Object.class));
+    private static final MethodHandle INTERPRET = Hooks.virtualMethod(PROGRAM, "evaluate",
+            MethodType.methodType(double.class, Object.class, boolean.class, double[].class, double[].class),
+            boolean.class, double[].class, double[].class);
+
+    @Param({"1+2*3", "sin(30)+cos(60)*2", "2*pi*(1/3)+sqrt(2)^2-ln(10)/log(10)"})
+    public String expr;
+
+    private Object program;
+    private final double[] noVars = new double[0];
+    private final double[] stack = new double[64];
+
+    @Setup
+    public void setup() throws Throwable {
+        program = (Object) PROGRAM_OF.invokeExact((Object) PARSE.invokeExact(expr));
+    }
+
+    @Benchmark
+    public double evaluateCached() throws Throwable {
+        return (double) EVALUATE.invokeExact(expr, true);
+    }
+
+    @Benchmark
+    public double evaluateUncached() throws Throwable {
+        Object p = (Object) PROGRAM_OF.invokeExact((Object) PARSE.invokeExact(expr));
+        return (double) INTERPRET.invokeExact(p, true, noVars, stack);
+    }
+
+    @Benchmark
+    public double interpretOnly() throws Throwable {
+        return (double) INTERPRET.invokeExact(program, true, noVars, stack);
+    }
+}
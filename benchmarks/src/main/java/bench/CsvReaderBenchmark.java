@@ -0,0 +1,71 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Csv.Reader over an in-memory buffer of 10k records: field views vs materialized Strings. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvReaderBenchmark {
+
+    private static final String READER = "Csv$Reader";
+    private static final MethodHandle OF = Hooks.staticMethod(READER, "of",
+            MethodType.methodType(Object.class, ByteBuffer.class), ByteBuffer.class);
+    private static final MethodHandle NEXT = Hooks.virtualMethod(READER, "next",
+            MethodType.methodType(boolean.class, Object.class));
+    private static final MethodHandle FIELD_COUNT = Hooks.virtualMethod(READER, "fieldCount",
+            MethodType.methodType(int.class, Object.class));
+    private static final MethodHandle FIELD = Hooks.virtualMethod(READER, "field",
+            MethodType.methodType(CharSequence.class, Object.class, int.class), int.class);
+    private static final MethodHandle STRING = Hooks.virtualMethod(READER, "string",
+            MethodType.methodType(String.class, Object.class, int.class), int.class);
+
+    private static final int RECORDS = 10_000;
+
+    @Param({"plain", "quoted"})
+    public String shape;
+
+    private ByteBuffer data;
+
+    @Setup
+    public void setup() {
+        String line = "plain".equals(shape)
+                ? "C1712345678901,Jane Doe,+1-555-0100,jane.doe@example.com,42 Main Street Springfield\n"
+                : "C1712345678901,\"Doe, Jane\",+1-555-0100,jane.doe@example.com,\"42 \"\"Main\"\" Street, Springfield\"\n";
+        StringBuilder sb = new StringBuilder(line.length() * RECORDS);
+        for (int i = 0; i < RECORDS; i++) sb.append(line);
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        data = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+
+    @Benchmark
+    public long fieldViews() throws Throwable {
+        Object r = (Object) OF.invokeExact(data.duplicate());
+        long chars = 0;
+        while ((boolean) NEXT.invokeExact(r)) {
+            int n = (int) FIELD_COUNT.invokeExact(r);
+            for (int i = 0; i < n; i++) chars += ((CharSequence) FIELD.invokeExact(r, i)).length();
+        }
+        return chars;
+    }
+
+    @Benchmark
+    public long strings() throws Throwable {
+        Object r = (Object) OF.invokeExact(data.duplicate());
+        long chars = 0;
+        while ((boolean) NEXT.invokeExact(r)) {
+            int n = (int) FIELD_COUNT.invokeExact(r);
+            for (int i = 0; i < n; i++) chars += ((String) STRING.invokeExact(r, i)).length();
+        }
+        return chars;
+    }
+}
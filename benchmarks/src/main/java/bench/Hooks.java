@@ -0,0 +1,95 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Reflective handles into the practice programs. They live in the default package,
+ * which a named package cannot import, and most of the hot paths are private.
+ * Handles are meant to be stored in static final fields so the JIT can inline them.
+ */
+final class Hooks {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Hooks() {}
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Missing class " + name + " (is practice-app on the classpath?)", e);
+        }
+    }
+
+    /** Static method, adapted to {@code type} (use Object for default-package types). */
+    static MethodHandle staticMethod(String owner, String name, MethodType type, Class<?>... params) {
+        try {
+            Method m = type(owner).getDeclaredMethod(name, params);
+            return lookupIn(m).findStatic(m.getDeclaringClass(), name, MethodType.methodType(m.getReturnType(), params))
+                    .asType(type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name, e);
+        }
+    }
+
+    /** Instance method; the receiver becomes the first parameter of {@code type}. */
+    static MethodHandle virtualMethod(String owner, String name, MethodType type, Class<?>... params) {
+        try {
+            Method m = type(owner).getDeclaredMethod(name, params);
+            return lookupIn(m).findVirtual(m.getDeclaringClass(), name, MethodType.methodType(m.getReturnType(), params))
+                    .asType(type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name, e);
+        }
+    }
+
+    /** Private access to the method's class, so findStatic/findVirtual can see private members. */
+    private static MethodHandles.Lookup lookupIn(Method m) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(m.getDeclaringClass(), LOOKUP);
+    }
+
+    static MethodHandle getter(String owner, String field, MethodType type) {
+        try {
+            Field f = type(owner).getDeclaredField(field);
+            f.setAccessible(true);
+            return LOOKUP.unreflectGetter(f).asType(type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + field, e);
+        }
+    }
+
+    static Object newInstance(String owner, Class<?>[] params, Object... args) {
+        try {
+            Constructor<?> c = type(owner).getDeclaredConstructor(params);
+            c.setAccessible(true);
+            return c.newInstance(args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("new " + owner, e);
+        }
+    }
+
+    static Object get(Object target, String field) {
+        try {
+            Field f = target.getClass().getDeclaredField(field);
+            f.setAccessible(true);
+            return f.get(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(field, e);
+        }
+    }
+
+    static void setStatic(String owner, String field, Object value) {
+        try {
+            Field f = type(owner).getDeclaredField(field);
+            f.setAccessible(true);
+            f.set(null, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + field, e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** Single-pass Calculator.tokenize against the previous regex tokenizer (legacyTokenize). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+
+    private static final MethodHandle TOKENIZE = Hooks.staticMethod("Calculator", "tokenize",
+            MethodType.methodType(List.class, String.class), String.class);
+    private static final MethodHandle LEGACY = Hooks.staticMethod("Calculator", "legacyTokenize",
+            MethodType.methodType(List.class, String.class), String.class);
+
+    @Param({"short", "long"})
+    public String size;
+
+    private String input;
+
+    @Setup
+    public void setup() {
+        if ("short".equals(size)) {
+            input = "2(3.5+4)*sin(30)-1.25^2 mod 7";
+            return;
+        }
+        // ~10k tokens: each chunk is 10 tokens ("(", "12.5", "+", "x", ")", "*", "3", "-", "4", "/") plus a closing "8"
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) sb.append("(12.5+x)*3-4/");
+        input = sb.append('8').toString();
+    }
+
+    @Benchmark
+    public List<?> singlePass() throws Throwable {
+        return (List<?>) TOKENIZE.invokeExact(input);
+    }
+
+    @Benchmark
+    public List<?> regex() throws Throwable {
+        return (List<?>) LEGACY.invokeExact(input);
+    }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/** PasswordManager.encrypt/decrypt; dominated by PBKDF2 key derivation (65536 rounds). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordManagerBenchmark {
+
+    private static final MethodHandle ENCRYPT = Hooks.staticMethod("PasswordManager", "encrypt",
+            MethodType.methodType(byte[].class, String.class, String.class), String.class, String.class);
+    private static final MethodHandle DECRYPT = Hooks.staticMethod("PasswordManager", "decrypt",
+            MethodType.methodType(String.class, byte[].class, String.class), byte[].class, String.class);
+
+    private static final String MASTER = "correct horse battery staple";
+
+    @Param({"64", "65536"})
+    public int plainLength;
+
+    private String plain;
+    private byte[] cipherText;
+
+    @Setup
+    public void setup() throws Throwable {
+        StringBuilder sb = new StringBuilder(plainLength);
+        while (sb.length() < plainLength) sb.append("site|user|pass|notes\n");
+        plain = sb.substring(0, plainLength);
+        cipherText = (byte[]) ENCRYPT.invokeExact(plain, MASTER);
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws Throwable {
+        return (byte[]) ENCRYPT.invokeExact(plain, MASTER);
+    }
+
+    @Benchmark
+    public String decrypt() throws Throwable {
+        return (String) DECRYPT.invokeExact(cipherText, MASTER);
+    }
+}
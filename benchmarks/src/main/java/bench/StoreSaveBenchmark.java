@@ -0,0 +1,65 @@
+package bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * MovieTicketBooking.saveStore, which serializes the whole store to store.ser in the
+ * working directory. Refuses to run where a store.ser already exists.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreSaveBenchmark {
+
+    private static final String APP = "MovieTicketBooking";
+    private static final Path STORE_FILE = Paths.get("store.ser");
+    private static final MethodHandle SAVE_STORE = Hooks.staticMethod(APP, "saveStore", MethodType.methodType(void.class));
+
+    @Param({"10", "1000"})
+    public int movies;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        if (Files.exists(STORE_FILE)) {
+            throw new IllegalStateException("Refusing to overwrite " + STORE_FILE.toAbsolutePath() + "; run from a scratch directory");
+        }
+        Object store = Hooks.newInstance(APP + "$DataStore", new Class<?>[0]);
+        List<Object> movieList = (List<Object>) Hooks.get(store, "movies");
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 11, 0);
+        for (int m = 0; m < movies; m++) {
+            Object movie = Hooks.newInstance(APP + "$Movie", new Class<?>[]{String.class, String.class, String.class},
+                    "M" + m, "Movie " + m, "Description of movie " + m);
+            List<Object> shows = (List<Object>) Hooks.get(movie, "shows");
+            for (int s = 0; s < 4; s++) {
+                shows.add(Hooks.newInstance(APP + "$Show", new Class<?>[]{String.class, LocalDateTime.class, int.class, int.class},
+                        "S" + m + "_" + s, base.plusHours(3L * s), 12, 20));
+            }
+            movieList.add(movie);
+        }
+        Hooks.setStatic(APP, "store", store);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(STORE_FILE);
+    }
+
+    @Benchmark
+    public void saveStore() throws Throwable {
+        SAVE_STORE.invokeExact();
+    }
+}